@@ -0,0 +1,273 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.IdentifiableValue;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import static biz.turnonline.ecosystem.origin.api.EndpointsApiProfile.API_NAME;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The last applied 'account.changes' message mark (publish time, message ID and the hash
+ * of the applied account projection) per account, kept in-process and in memcache.
+ * Pub/Sub delivers at least once and out of order, the marks let drop redelivered and outdated messages
+ * before any parsing or datastore work.
+ * <p>
+ * Most of the messages change properties this microservice does not store. Such message, whose
+ * projection hash (see {@link AccountSnapshot#projectionHash()}) equals the last applied one, is acknowledged
+ * without loading the local account at all. The hash is compared only with the mark shared in memcache,
+ * as the in-process state of an instance might miss the changes applied by other instances.
+ * The memcache mark is written by compare-and-set, the mark of the later published message always wins.
+ * <p>
+ * The marks are just a fast path, the durable mark is stored on {@link LocalAccount} once saved.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class AccountChangeMarks
+{
+    static final int EXPIRATION_HOURS = 6;
+
+    private static final int MAXIMUM_SIZE = 5000;
+
+    private static final String KEY_PREFIX = API_NAME + "::AccountChangeMark::";
+
+    private static final int CAS_ATTEMPTS = 3;
+
+    private final Cache<Long, String> local;
+
+    private final MemcacheService syncCache;
+
+    private final LongAdder stale = new LongAdder();
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder unchanged = new LongAdder();
+
+    AccountChangeMarks()
+    {
+        local = CacheBuilder.newBuilder()
+                .maximumSize( MAXIMUM_SIZE )
+                .expireAfterWrite( EXPIRATION_HOURS, TimeUnit.HOURS )
+                .build();
+
+        syncCache = MemcacheServiceFactory.getMemcacheService();
+        syncCache.setErrorHandler( ErrorHandlers.getConsistentLogAndContinue( Level.INFO ) );
+    }
+
+    /**
+     * Checks whether the message is a duplicate or older than the last applied one for the account.
+     * Message with unknown publish time is never considered as stale.
+     *
+     * @param accountId   the account ID the message belongs to
+     * @param publishTime the message publish time
+     * @param messageId   the message ID
+     * @return true if the message should be dropped
+     */
+    boolean isStale( @Nonnull Long accountId, @Nonnull Instant publishTime, @Nullable String messageId )
+    {
+        checkNotNull( accountId, "Account ID can't be null" );
+        checkNotNull( publishTime, "Publish time can't be null" );
+
+        if ( Instant.EPOCH.equals( publishTime ) )
+        {
+            return false;
+        }
+
+        String mark = mark( accountId );
+        return mark != null && isStale( mark, publishTime, messageId );
+    }
+
+    /**
+     * Checks whether the account projection has not changed since the last applied message.
+     * Only the mark shared in memcache is taken into account, once missing the message has to be applied.
+     *
+     * @param accountId the account ID the message belongs to
+     * @param hash      the projection hash of the incoming account
+     * @return true if there is nothing to apply, the message might be acknowledged right away
+     */
+    boolean isUnchanged( @Nonnull Long accountId, long hash )
+    {
+        checkNotNull( accountId, "Account ID can't be null" );
+
+        Object cached = syncCache.get( KEY_PREFIX + accountId );
+        boolean result = isValid( cached ) && String.valueOf( hash ).equals( parts( ( String ) cached ).get( 1 ) );
+
+        if ( result )
+        {
+            unchanged.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Checks the message against the durable mark of the local account.
+     *
+     * @param account     the local account
+     * @param publishTime the message publish time
+     * @param messageId   the message ID
+     * @return true if the message should be dropped
+     */
+    boolean isStale( @Nonnull LocalAccount account, @Nonnull Instant publishTime, @Nullable String messageId )
+    {
+        Instant applied = account.getChangePublishTime();
+        if ( applied == null || Instant.EPOCH.equals( publishTime ) )
+        {
+            return false;
+        }
+        return isStale( mark( applied, account.getChangeMessageId(), 0 ), publishTime, messageId );
+    }
+
+    private boolean isStale( @Nonnull String mark, @Nonnull Instant publishTime, @Nullable String messageId )
+    {
+        List<String> parts = parts( mark );
+        Instant applied = Instant.ofEpochMilli( Long.parseLong( parts.get( 0 ) ) );
+        String appliedMessageId = parts.get( 2 );
+
+        if ( !Strings.isNullOrEmpty( messageId ) && messageId.equals( appliedMessageId ) )
+        {
+            duplicates.increment();
+            return true;
+        }
+        if ( publishTime.isBefore( applied ) )
+        {
+            stale.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the message as the last applied one for the account.
+     *
+     * @param accountId   the account ID the message belongs to
+     * @param publishTime the message publish time
+     * @param messageId   the message ID
+     * @param hash        the projection hash of the applied account
+     */
+    void applied( @Nonnull Long accountId, @Nonnull Instant publishTime, @Nullable String messageId, long hash )
+    {
+        checkNotNull( accountId, "Account ID can't be null" );
+        checkNotNull( publishTime, "Publish time can't be null" );
+
+        String mark = mark( publishTime, messageId, hash );
+        local.asMap().merge( accountId, mark, ( current, next ) -> isBefore( next, current ) ? current : next );
+
+        String key = KEY_PREFIX + accountId;
+        Expiration expiration = Expiration.byDeltaSeconds( EXPIRATION_HOURS * 3600 );
+
+        for ( int attempt = 0; attempt < CAS_ATTEMPTS; attempt++ )
+        {
+            IdentifiableValue current = syncCache.getIdentifiable( key );
+            if ( current == null )
+            {
+                if ( syncCache.put( key, mark, expiration, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT ) )
+                {
+                    return;
+                }
+                continue;
+            }
+
+            Object value = current.getValue();
+            if ( isValid( value ) && isBefore( mark, ( String ) value ) )
+            {
+                // the later published message has been already applied (most likely by another instance)
+                return;
+            }
+            if ( syncCache.putIfUntouched( key, current, mark, expiration ) )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of messages dropped as older than the last applied one.
+     *
+     * @return the stale message count
+     */
+    public long staleCount()
+    {
+        return stale.sum();
+    }
+
+    /**
+     * Returns the number of dropped redelivered messages.
+     *
+     * @return the duplicate message count
+     */
+    public long duplicateCount()
+    {
+        return duplicates.sum();
+    }
+
+    /**
+     * Returns the number of messages acknowledged without local account load as nothing to apply.
+     *
+     * @return the skipped load count
+     */
+    public long unchangedCount()
+    {
+        return unchanged.sum();
+    }
+
+    private String mark( @Nonnull Long accountId )
+    {
+        String mark = local.getIfPresent( accountId );
+        if ( mark == null )
+        {
+            Object cached = syncCache.get( KEY_PREFIX + accountId );
+            if ( isValid( cached ) )
+            {
+                mark = ( String ) cached;
+                local.put( accountId, mark );
+            }
+        }
+        return mark;
+    }
+
+    /**
+     * Returns true if the memcache value is a mark, the value of unknown format is ignored.
+     */
+    private static boolean isValid( @Nullable Object value )
+    {
+        return value instanceof String && parts( ( String ) value ).size() == 3;
+    }
+
+    /**
+     * Returns true if the mark has been published before the other one.
+     */
+    private static boolean isBefore( @Nonnull String mark, @Nonnull String other )
+    {
+        return Long.parseLong( parts( mark ).get( 0 ) ) < Long.parseLong( parts( other ).get( 0 ) );
+    }
+
+    /**
+     * The mark format is {@code publishTimeMillis:projectionHash:messageId}.
+     */
+    private static String mark( @Nonnull Instant publishTime, @Nullable String messageId, long hash )
+    {
+        return publishTime.toEpochMilli() + ":" + hash + ":" + Objects.toString( messageId, "" );
+    }
+
+    private static List<String> parts( @Nonnull String mark )
+    {
+        return Splitter.on( ':' ).limit( 3 ).splitToList( mark );
+    }
+}
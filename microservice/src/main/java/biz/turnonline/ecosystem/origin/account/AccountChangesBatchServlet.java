@@ -0,0 +1,142 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The drain task handler ({@link #PATH}) of the {@link AccountChangesBuffer}. Leases buffered messages
+ * in batches and lets them process by {@link AccountStewardChangesSubscription#onMessages(List, String)},
+ * per subscription the messages have been received by.
+ * <p>
+ * Tasks of the successfully processed accounts are deleted, others are left in the queue
+ * to be leased again once the lease expires. As the drain task is scheduled only by a newly buffered message,
+ * another drain is scheduled for the failed messages once their lease expires, same as right away
+ * for the messages left in the queue once the time budget has been exhausted.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class AccountChangesBatchServlet
+        extends HttpServlet
+{
+    public static final String PATH = "/_ah/queue/account-changes";
+
+    /**
+     * The time budget of the single drain request, well below the push task request deadline.
+     */
+    static final long BUDGET_SECONDS = 60;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( AccountChangesBatchServlet.class );
+
+    private static final long serialVersionUID = 3148290264418312475L;
+
+    private final AccountChangesBuffer buffer;
+
+    private final AccountStewardChangesSubscription subscription;
+
+    @Inject
+    AccountChangesBatchServlet( AccountChangesBuffer buffer, AccountStewardChangesSubscription subscription )
+    {
+        this.buffer = buffer;
+        this.subscription = subscription;
+    }
+
+    @Override
+    protected void doPost( HttpServletRequest request, HttpServletResponse response )
+    {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        int processed = 0;
+        boolean failed = false;
+        boolean leftover = false;
+
+        List<TaskHandle> tasks = buffer.lease();
+        while ( !tasks.isEmpty() )
+        {
+            int drained = drain( tasks );
+            processed += drained;
+            failed |= drained < tasks.size();
+
+            if ( tasks.size() < AccountChangesBuffer.LEASE_LIMIT )
+            {
+                break;
+            }
+            if ( stopwatch.elapsed( TimeUnit.SECONDS ) > BUDGET_SECONDS )
+            {
+                leftover = true;
+                break;
+            }
+            tasks = buffer.lease();
+        }
+
+        if ( leftover )
+        {
+            LOGGER.info( "Time budget exhausted, scheduling another drain for the rest of the buffered messages" );
+            buffer.scheduleDrain( 0 );
+        }
+        if ( failed )
+        {
+            LOGGER.info( "Scheduling another drain for the failed message(s) once their lease expires" );
+            buffer.scheduleDrain( TimeUnit.SECONDS.toMillis( AccountChangesBuffer.LEASE_SECONDS ) );
+        }
+
+        LOGGER.info( processed + " buffered message(s) drained in " + stopwatch );
+        response.setStatus( HttpServletResponse.SC_OK );
+    }
+
+    private int drain( List<TaskHandle> tasks )
+    {
+        // the messages grouped by the subscription they have been received by
+        Map<String, List<PubsubMessage>> messages = new LinkedHashMap<>();
+        List<TaskHandle> done = new ArrayList<>();
+
+        for ( TaskHandle task : tasks )
+        {
+            try
+            {
+                messages.computeIfAbsent( AccountChangesBuffer.subscription( task ), name -> new ArrayList<>() )
+                        .add( AccountChangesBuffer.message( task ) );
+            }
+            catch ( IOException e )
+            {
+                // not deserializable message never will be, drop it
+                LOGGER.error( "Buffered message deserialization has failed, task: " + task.getName(), e );
+                done.add( task );
+            }
+        }
+
+        Map<String, Set<Long>> failed = new HashMap<>();
+        messages.forEach( ( name, batch ) -> failed.put( name, subscription.onMessages( batch, name ) ) );
+
+        for ( TaskHandle task : tasks )
+        {
+            Set<Long> failedAccounts = failed.getOrDefault( AccountChangesBuffer.subscription( task ),
+                    Collections.emptySet() );
+
+            if ( !done.contains( task ) && !failedAccounts.contains( AccountChangesBuffer.accountId( task ) ) )
+            {
+                done.add( task );
+            }
+        }
+
+        buffer.delete( done );
+        return done.size();
+    }
+}
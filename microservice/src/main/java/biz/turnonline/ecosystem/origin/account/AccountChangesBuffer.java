@@ -0,0 +1,164 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.appengine.api.taskqueue.LeaseOptions;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The short term buffer of the 'account.changes' messages, backed by the pull queue {@link #QUEUE}
+ * (see {@code queue.yaml}). Messages are tagged by the subscription name and the account ID
+ * ({@code subscription:accountId}), the stage metrics of the batch are recorded per subscription.
+ * <p>
+ * Each buffered message makes sure there is a drain task scheduled in the {@link #DRAIN_QUEUE}
+ * at the end of the current buffering window, named by the window thus scheduled only once per window.
+ * The drain task is handled by {@link AccountChangesBatchServlet}, which schedules another one
+ * if it has left any message in the queue.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class AccountChangesBuffer
+{
+    static final String QUEUE = "account-changes";
+
+    static final String DRAIN_QUEUE = "account-changes-drain";
+
+    static final long WINDOW_MILLIS = TimeUnit.SECONDS.toMillis( 5 );
+
+    static final int LEASE_LIMIT = 500;
+
+    static final long LEASE_SECONDS = 120;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( AccountChangesBuffer.class );
+
+    private static final char TAG_SEPARATOR = ':';
+
+    /**
+     * Buffers the message to be processed in a batch.
+     *
+     * @param message      the Pub/Sub message to be buffered
+     * @param accountId    the account ID the message belongs to
+     * @param subscription the name of the subscription the message has been received by
+     * @throws IOException if message serialization has failed
+     */
+    void buffer( @Nonnull PubsubMessage message, @Nonnull Long accountId, @Nonnull String subscription )
+            throws IOException
+    {
+        checkNotNull( message, "Message can't be null" );
+        checkNotNull( accountId, "Account ID can't be null" );
+        checkNotNull( subscription, "Subscription can't be null" );
+
+        byte[] payload = JacksonFactory.getDefaultInstance().toByteArray( message );
+        QueueFactory.getQueue( QUEUE ).add( TaskOptions.Builder
+                .withMethod( TaskOptions.Method.PULL )
+                .tag( subscription + TAG_SEPARATOR + accountId )
+                .payload( payload ) );
+
+        scheduleDrain( 0 );
+    }
+
+    /**
+     * Makes sure there is a drain task scheduled at the end of the buffering window
+     * the given delay falls into.
+     *
+     * @param delayMillis the minimal delay of the drain in milliseconds, zero for the current window
+     */
+    void scheduleDrain( long delayMillis )
+    {
+        long window = ( System.currentTimeMillis() + delayMillis ) / WINDOW_MILLIS;
+        try
+        {
+            QueueFactory.getQueue( DRAIN_QUEUE ).add( TaskOptions.Builder
+                    .withUrl( AccountChangesBatchServlet.PATH )
+                    .taskName( QUEUE + "-" + window )
+                    .etaMillis( ( window + 1 ) * WINDOW_MILLIS ) );
+        }
+        catch ( TaskAlreadyExistsException e )
+        {
+            // already scheduled for the window
+            LOGGER.debug( "Drain task already exists for window " + window );
+        }
+    }
+
+    /**
+     * Leases the buffered messages.
+     *
+     * @return the leased tasks, empty if none
+     */
+    List<TaskHandle> lease()
+    {
+        Queue queue = QueueFactory.getQueue( QUEUE );
+        return queue.leaseTasks( LeaseOptions.Builder
+                .withLeasePeriod( LEASE_SECONDS, TimeUnit.SECONDS )
+                .countLimit( LEASE_LIMIT ) );
+    }
+
+    /**
+     * Deserializes the buffered message.
+     *
+     * @param task the leased task
+     * @return the Pub/Sub message
+     * @throws IOException if message deserialization has failed
+     */
+    static PubsubMessage message( @Nonnull TaskHandle task ) throws IOException
+    {
+        String json = new String( task.getPayload(), StandardCharsets.UTF_8 );
+        return JacksonFactory.getDefaultInstance().fromString( json, PubsubMessage.class );
+    }
+
+    /**
+     * Returns the name of the subscription the buffered message has been received by.
+     * The task tagged just by the account ID (buffered by the former version)
+     * belongs to {@link AccountStewardChangesSubscription#NAME}.
+     *
+     * @param task the leased task
+     * @return the subscription name
+     */
+    static String subscription( @Nonnull TaskHandle task )
+    {
+        String tag = task.getTag();
+        int separator = tag.lastIndexOf( TAG_SEPARATOR );
+        return separator < 0 ? AccountStewardChangesSubscription.NAME : tag.substring( 0, separator );
+    }
+
+    /**
+     * Returns the account ID the buffered message belongs to.
+     *
+     * @param task the leased task
+     * @return the account ID
+     */
+    static Long accountId( @Nonnull TaskHandle task )
+    {
+        String tag = task.getTag();
+        return Long.valueOf( tag.substring( tag.lastIndexOf( TAG_SEPARATOR ) + 1 ) );
+    }
+
+    /**
+     * Deletes processed tasks from the queue.
+     *
+     * @param tasks the tasks to be deleted
+     */
+    void delete( @Nonnull List<TaskHandle> tasks )
+    {
+        if ( !tasks.isEmpty() )
+        {
+            QueueFactory.getQueue( QUEUE ).deleteTask( tasks );
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.common.base.MoreObjects;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Cache;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The lookup entity that maps the (lower case) login email straight to the {@link LocalAccount} key.
+ * It makes the retrieval by email a cached key based get instead of an eventually consistent index query.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Cache( expirationSeconds = 3600 )
+@Entity( name = "REPLACE_PREFIX_AccountEmailLookup" )
+public class AccountEmailLookup
+{
+    @Id
+    private String email;
+
+    private Key<LocalAccount> account;
+
+    AccountEmailLookup()
+    {
+    }
+
+    AccountEmailLookup( @Nonnull String email, @Nonnull Long accountId )
+    {
+        this.email = LocalAccountCache.normalize( checkNotNull( email, "Account email can't be null" ) );
+        this.account = Key.create( LocalAccount.class, checkNotNull( accountId, "Account ID can't be null" ) );
+    }
+
+    /**
+     * Returns the key of the lookup entity for given login email.
+     *
+     * @param email the login email address of the account
+     * @return the lookup entity key
+     */
+    static Key<AccountEmailLookup> key( @Nonnull String email )
+    {
+        return Key.create( AccountEmailLookup.class, LocalAccountCache.normalize( email ) );
+    }
+
+    /**
+     * Returns the key of the associated local account.
+     *
+     * @return the local account key
+     */
+    Key<LocalAccount> getAccount()
+    {
+        return account;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+                .add( "email", email )
+                .add( "account", account )
+                .toString();
+    }
+}
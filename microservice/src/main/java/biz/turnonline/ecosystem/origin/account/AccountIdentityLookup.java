@@ -0,0 +1,66 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.common.base.MoreObjects;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Cache;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The lookup entity that maps the login provider identity ID straight to the {@link LocalAccount} key.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Cache( expirationSeconds = 3600 )
+@Entity( name = "REPLACE_PREFIX_AccountIdentityLookup" )
+public class AccountIdentityLookup
+{
+    @Id
+    private String identityId;
+
+    private Key<LocalAccount> account;
+
+    AccountIdentityLookup()
+    {
+    }
+
+    AccountIdentityLookup( @Nonnull String identityId, @Nonnull Long accountId )
+    {
+        this.identityId = checkNotNull( identityId, "Account Identity ID can't be null" );
+        this.account = Key.create( LocalAccount.class, checkNotNull( accountId, "Account ID can't be null" ) );
+    }
+
+    /**
+     * Returns the key of the lookup entity for given identity ID.
+     *
+     * @param identityId the account unique identification within login provider system
+     * @return the lookup entity key
+     */
+    static Key<AccountIdentityLookup> key( @Nonnull String identityId )
+    {
+        return Key.create( AccountIdentityLookup.class, identityId );
+    }
+
+    /**
+     * Returns the key of the associated local account.
+     *
+     * @return the local account key
+     */
+    Key<LocalAccount> getAccount()
+    {
+        return account;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+                .add( "identityId", identityId )
+                .add( "account", account )
+                .toString();
+    }
+}
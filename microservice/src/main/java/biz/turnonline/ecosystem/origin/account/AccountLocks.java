@@ -0,0 +1,131 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Striped;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The per account striped locks to serialize concurrent updates of the same account within an instance.
+ * Updates of the same account are applied one by one instead of colliding in datastore transactions,
+ * while updates of different accounts (mostly different stripes) run in parallel.
+ * <p>
+ * The lock acquisitions that had to wait for another update (contention) and the time spent waiting
+ * are counted.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class AccountLocks
+{
+    static final int STRIPES = 64;
+
+    private final Striped<Lock> stripes = Striped.lock( STRIPES );
+
+    private final LongAdder acquired = new LongAdder();
+
+    private final LongAdder contended = new LongAdder();
+
+    private final LongAdder waitMillis = new LongAdder();
+
+    /**
+     * Acquires the lock of the given account, the caller is responsible to unlock it.
+     *
+     * @param accountId the account ID
+     * @return the acquired lock
+     */
+    Lock lock( @Nonnull Long accountId )
+    {
+        Lock lock = stripes.get( checkNotNull( accountId, "Account ID can't be null" ) );
+        acquire( lock );
+        return lock;
+    }
+
+    /**
+     * Acquires the locks of all given accounts in a consistent order (deadlock free),
+     * the caller is responsible to unlock them.
+     *
+     * @param accountIds the account IDs
+     * @return the acquired locks
+     */
+    List<Lock> lockAll( @Nonnull Collection<Long> accountIds )
+    {
+        List<Lock> locks = new ArrayList<>();
+        for ( Lock lock : stripes.bulkGet( accountIds ) )
+        {
+            // the same stripe might be shared by multiple accounts, lock it just once
+            if ( !locks.contains( lock ) )
+            {
+                acquire( lock );
+                locks.add( lock );
+            }
+        }
+        return locks;
+    }
+
+    /**
+     * Releases all given locks.
+     *
+     * @param locks the locks to be released
+     */
+    static void unlockAll( @Nonnull List<Lock> locks )
+    {
+        for ( int index = locks.size() - 1; index >= 0; index-- )
+        {
+            locks.get( index ).unlock();
+        }
+    }
+
+    private void acquire( Lock lock )
+    {
+        acquired.increment();
+        if ( lock.tryLock() )
+        {
+            return;
+        }
+
+        contended.increment();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        lock.lock();
+        waitMillis.add( stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+    }
+
+    /**
+     * Returns the number of lock acquisitions.
+     *
+     * @return the acquired count
+     */
+    public long acquiredCount()
+    {
+        return acquired.sum();
+    }
+
+    /**
+     * Returns the number of lock acquisitions that had to wait for another update of the same stripe.
+     *
+     * @return the contended count
+     */
+    public long contendedCount()
+    {
+        return contended.sum();
+    }
+
+    /**
+     * Returns the total time spent waiting for a lock.
+     *
+     * @return the wait time in milliseconds
+     */
+    public long waitMillis()
+    {
+        return waitMillis.sum();
+    }
+}
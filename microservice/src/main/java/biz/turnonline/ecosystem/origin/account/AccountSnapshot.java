@@ -0,0 +1,251 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import biz.turnonline.ecosystem.steward.model.Account;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.api.client.util.Base64;
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The projection of the remote {@link Account} limited to the properties the local account is interested in.
+ * <p>
+ * Instead of binding the whole account document (business, billing, contact details, etc.) it's being
+ * extracted by the streaming parser, skipping not interested sub-trees and leaving the document once
+ * all of the properties have been found.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class AccountSnapshot
+{
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final int PROPERTIES = 4;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private String email;
+
+    private String zoneId;
+
+    private String locale;
+
+    private String domicile;
+
+    private AccountSnapshot()
+    {
+    }
+
+    /**
+     * Parses the base64 encoded JSON account document, the format of the Pub/Sub message data.
+     *
+     * @param data the base64 encoded account JSON
+     * @return the account snapshot
+     * @throws IOException if the document is not a valid JSON
+     */
+    static AccountSnapshot parse( @Nonnull String data ) throws IOException
+    {
+        return parse( Base64.decodeBase64( checkNotNull( data, "Data can't be null" ) ) );
+    }
+
+    /**
+     * Parses the JSON account document.
+     *
+     * @param json the account JSON as bytes
+     * @return the account snapshot
+     * @throws IOException if the document is not a valid JSON
+     */
+    static AccountSnapshot parse( @Nonnull byte[] json ) throws IOException
+    {
+        checkNotNull( json, "JSON can't be null" );
+
+        AccountSnapshot snapshot = new AccountSnapshot();
+        try ( JsonParser parser = FACTORY.createParser( json ) )
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                throw new IOException( "Account JSON object expected" );
+            }
+
+            int found = 0;
+            while ( found < PROPERTIES && parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                switch ( name )
+                {
+                    case "email":
+                    {
+                        snapshot.email = text( parser, value );
+                        found++;
+                        break;
+                    }
+                    case "zoneId":
+                    {
+                        snapshot.zoneId = text( parser, value );
+                        found++;
+                        break;
+                    }
+                    case "locale":
+                    {
+                        snapshot.locale = text( parser, value );
+                        found++;
+                        break;
+                    }
+                    case "business":
+                    {
+                        snapshot.domicile = domicile( parser, value );
+                        found++;
+                        break;
+                    }
+                    default:
+                    {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Reads the domicile from the business object and leaves the rest of the object unread.
+     */
+    private static String domicile( JsonParser parser, JsonToken value ) throws IOException
+    {
+        if ( value != JsonToken.START_OBJECT )
+        {
+            parser.skipChildren();
+            return null;
+        }
+
+        String domicile = null;
+        while ( parser.nextToken() == JsonToken.FIELD_NAME )
+        {
+            String name = parser.getCurrentName();
+            JsonToken next = parser.nextToken();
+            if ( "domicile".equals( name ) )
+            {
+                domicile = text( parser, next );
+            }
+            else
+            {
+                parser.skipChildren();
+            }
+        }
+        return domicile;
+    }
+
+    private static String text( JsonParser parser, JsonToken value ) throws IOException
+    {
+        if ( value == JsonToken.VALUE_STRING )
+        {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * The login email address of the account.
+     */
+    @Nullable
+    String getEmail()
+    {
+        return email;
+    }
+
+    /**
+     * The time-zone ID, such as Europe/Paris.
+     */
+    @Nullable
+    String getZoneId()
+    {
+        return zoneId;
+    }
+
+    /**
+     * The preferred account language, ISO 639 alpha-2 or alpha-3 language code.
+     */
+    @Nullable
+    String getLocale()
+    {
+        return locale;
+    }
+
+    /**
+     * The ISO 3166 alpha-2 country code of the account business domicile.
+     */
+    @Nullable
+    String getDomicile()
+    {
+        return domicile;
+    }
+
+    /**
+     * Returns the hash of the account projection the local account is interested in.
+     *
+     * @return the projection hash
+     * @see #projectionHash(String, String, String, String)
+     */
+    long projectionHash()
+    {
+        return projectionHash( email, locale, zoneId, domicile );
+    }
+
+    /**
+     * Computes the compact hash of the account projection. The email is compared case insensitive.
+     *
+     * @param email    the login email
+     * @param locale   the preferred language
+     * @param zoneId   the time-zone ID
+     * @param domicile the business domicile
+     * @return the projection hash
+     */
+    static long projectionHash( @Nullable String email,
+                                @Nullable String locale,
+                                @Nullable String zoneId,
+                                @Nullable String domicile )
+    {
+        Hasher hasher = HASH_FUNCTION.newHasher();
+        put( hasher, email == null ? null : LocalAccountCache.normalize( email ) );
+        put( hasher, locale );
+        put( hasher, zoneId );
+        put( hasher, domicile );
+        return hasher.hash().asLong();
+    }
+
+    private static void put( Hasher hasher, String value )
+    {
+        if ( value == null )
+        {
+            hasher.putInt( -1 );
+        }
+        else
+        {
+            hasher.putInt( value.length() ).putString( value, StandardCharsets.UTF_8 );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+                .add( "email", email )
+                .add( "zoneId", zoneId )
+                .add( "locale", locale )
+                .add( "domicile", domicile )
+                .toString();
+    }
+}
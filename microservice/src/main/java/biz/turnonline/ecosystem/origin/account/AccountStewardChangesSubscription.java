@@ -1,8 +1,12 @@
 package biz.turnonline.ecosystem.origin.account;
 
+import biz.turnonline.ecosystem.origin.cache.RemoteAccountCache;
+import biz.turnonline.ecosystem.origin.pubsub.SubscriptionMetrics;
 import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
 import biz.turnonline.ecosystem.steward.model.Account;
+import com.google.api.client.util.Base64;
 import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import org.apache.commons.lang3.LocaleUtils;
 import org.ctoolkit.restapi.client.pubsub.PubsubCommand;
@@ -13,9 +17,23 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.IOException;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 
 import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ACCOUNT_EMAIL;
 import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ACCOUNT_IDENTITY_ID;
@@ -26,12 +44,27 @@ import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ENCODED_UNIQUE_KE
 /**
  * The 'account.changes' subscription listener implementation.
  * Updates following property values from {@link Account} if any of those values
- * has changed comparing to {@link LocalAccount}.
+ * has changed comparing to {@link LocalAccount}. Only those properties are extracted
+ * from the message payload (see {@link AccountSnapshot}), the account is not bound as a whole.
  * <ul>
  *     <li>{@link LocalAccount#setEmail(String)}</li>
  *     <li>{@link LocalAccount#setZoneId(String)}</li>
  *     <li>{@link LocalAccount#setLocale(String)}</li>
+ *     <li>{@link LocalAccount#setDomicile(String)}</li>
  * </ul>
+ * By default each message is processed right away. Optionally, configured via system property
+ * {@link #DELIVERY_PROPERTY}, messages might be buffered and processed in batches
+ * (except new account sign-up), where updates of the same account collapse to the latest one,
+ * or handed off to be processed by push queue (value {@code fast-ack}, see {@code FastAckListener}).
+ * <p>
+ * Redelivered and out of order messages, older than the last applied one, are dropped,
+ * same as messages with no change of the properties above (see {@link AccountChangeMarks}).
+ * Concurrent updates of the same account within an instance are serialized (see {@link AccountLocks}),
+ * the batch holds the locks only for the final save. The change is never applied to the instance served by
+ * {@link LocalAccountCache} (shared with concurrent readers), see {@link LocalAccountProvider#getForUpdate(Long)}.
+ * <p>
+ * The received account document of any not stale message is written to the {@link RemoteAccountCache} as is,
+ * so the remote account is served up to date without the remote call.
  *
  * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
  */
@@ -39,44 +72,100 @@ import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ENCODED_UNIQUE_KE
 public class AccountStewardChangesSubscription
         implements PubsubMessageListener
 {
+    /**
+     * The subscription name the listener is registered with.
+     */
+    public static final String NAME = "account.changes";
+
     private static final Logger LOGGER = LoggerFactory.getLogger( AccountStewardChangesSubscription.class );
 
+    /**
+     * The system property name to configure the delivery mode (see {@code appengine-web.xml}).
+     */
+    static final String DELIVERY_PROPERTY = "account.changes.delivery";
+
+    /**
+     * Each message is being processed right away within push request.
+     */
+    static final String DELIVERY_INLINE = "inline";
+
+    /**
+     * Messages are buffered in {@link AccountChangesBuffer} and processed in batches.
+     */
+    static final String DELIVERY_BATCH = "batch";
+
     private static final long serialVersionUID = -6791606962382054854L;
 
     private final LocalAccountProvider lap;
 
+    private final LocalAccountCache cache;
+
+    private final NotFoundAccountCache notFound;
+
+    private final AccountChangesBuffer buffer;
+
+    private final AccountChangeMarks marks;
+
+    private final SubscriptionMetrics metrics;
+
+    private final AccountLocks locks;
+
+    private final RemoteAccountCache remoteCache;
+
     @Inject
-    AccountStewardChangesSubscription( LocalAccountProvider lap )
+    AccountStewardChangesSubscription( LocalAccountProvider lap,
+                                       LocalAccountCache cache,
+                                       NotFoundAccountCache notFound,
+                                       AccountChangesBuffer buffer,
+                                       AccountChangeMarks marks,
+                                       SubscriptionMetrics metrics,
+                                       AccountLocks locks,
+                                       RemoteAccountCache remoteCache )
     {
         this.lap = lap;
+        this.cache = cache;
+        this.notFound = notFound;
+        this.buffer = buffer;
+        this.marks = marks;
+        this.metrics = metrics;
+        this.locks = locks;
+        this.remoteCache = remoteCache;
+    }
+
+    /**
+     * Returns the configured delivery mode of the messages.
+     *
+     * @return the delivery mode, {@link #DELIVERY_INLINE} by default
+     */
+    static String delivery()
+    {
+        return System.getProperty( DELIVERY_PROPERTY, DELIVERY_INLINE );
     }
 
     @Override
     public void onMessage( @Nonnull PubsubMessage message, @Nonnull String subscription ) throws Exception
     {
-        PubsubCommand command = new PubsubCommand( message );
-        String[] mandatory = {DATA_TYPE, ENCODED_UNIQUE_KEY, ACCOUNT_UNIQUE_ID, ACCOUNT_EMAIL, ACCOUNT_IDENTITY_ID};
-        if ( !command.validate( mandatory ) )
+        PubsubCommand command = accountCommand( message, subscription );
+        if ( command == null )
         {
-            LOGGER.error( "Some of the mandatory attributes "
-                    + Arrays.toString( mandatory )
-                    + " are missing, incoming attributes: "
-                    + message.getAttributes() );
             return;
         }
 
-        String dataType = command.getDataType();
-        if ( !Account.class.getSimpleName().equals( dataType ) )
+        Long accountId = command.getAccountId();
+        Instant publishTime = publishTime( message );
+        String messageId = message.getMessageId();
+
+        if ( marks.isStale( accountId, publishTime, messageId ) )
         {
-            LOGGER.info( "Uninterested data type '" + dataType + "'" );
+            LOGGER.info( "[" + subscription + "] Dropping stale or duplicate message '" + messageId
+                    + "' published at " + message.getPublishTime() + " for account ID " + accountId );
             return;
         }
 
-        Long accountId = command.getAccountId();
         String data = message.getData();
         boolean signUp = command.isAccountSignUp();
 
-        LOGGER.info( "[" + subscription + "] " + dataType + " has been received at publish time "
+        LOGGER.info( "[" + subscription + "] " + command.getDataType() + " has been received at publish time "
                 + message.getPublishTime()
                 + " with length: "
                 + data.length()
@@ -85,19 +174,364 @@ public class AccountStewardChangesSubscription
                 + "'. Is new account sign-up: "
                 + signUp );
 
-        Account account = PubsubCommand.fromString( data, Account.class );
-        LocalAccount localAccount = lap.initGet( new LocalAccountProvider.Builder()
-                .accountId( accountId )
+        if ( signUp )
+        {
+            // the account has just been created, forget it has been recently not found
+            notFound.invalidate( command.getAccountIdentityId(), command.getAccountEmail() );
+        }
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        byte[] json = Base64.decodeBase64( data );
+        AccountSnapshot account = AccountSnapshot.parse( json );
+        long hash = account.projectionHash();
+        metrics.parse( subscription, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+
+        boolean unchanged = !signUp && marks.isUnchanged( accountId, hash );
+        if ( !unchanged && !signUp && DELIVERY_BATCH.equals( delivery() ) )
+        {
+            // new account sign-up is always processed right away, the user is waiting for it,
+            // the buffered message refreshes the cached remote account once drained
+            buffer.buffer( message, accountId, subscription );
+            return;
+        }
+
+        // even the properties not stored locally have changed, refresh the cached remote account
+        remoteCache.put( accountId, command.getAccountIdentityId(), json, publishTime );
+
+        if ( unchanged )
+        {
+            LOGGER.info( "[" + subscription + "] Nothing to apply for account ID " + accountId );
+            marks.applied( accountId, publishTime, messageId, hash );
+            return;
+        }
+
+        // concurrent updates of the same account are applied one by one
+        Lock lock = locks.lock( accountId );
+        try
+        {
+            stopwatch = Stopwatch.createStarted();
+            LocalAccount localAccount = lap.initGet( builder( command ) );
+            if ( isChanged( localAccount, account ) )
+            {
+                // the loaded instance is shared with concurrent readers, the change is applied to own instance
+                localAccount = lap.getForUpdate( accountId );
+            }
+            metrics.load( subscription, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+
+            if ( localAccount == null )
+            {
+                LOGGER.warn( "[" + subscription + "] Local account ID " + accountId + " has been removed meanwhile" );
+                return;
+            }
+
+            if ( marks.isStale( localAccount, publishTime, messageId ) )
+            {
+                LOGGER.info( "[" + subscription + "] Message '" + messageId + "' is older than the last applied one" );
+                return;
+            }
+
+            if ( process( localAccount, account ) )
+            {
+                localAccount.setChangeApplied( publishTime, messageId );
+
+                stopwatch = Stopwatch.createStarted();
+                localAccount.save();
+                metrics.save( subscription, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+                // the secondary keys (email) might have changed
+                cache.invalidate( localAccount );
+            }
+            marks.applied( accountId, publishTime, messageId, hash );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Processes the batch of buffered messages. Only the latest message (by publish time) of each account
+     * is being applied, while all changed accounts are saved with multi-entity puts.
+     *
+     * @param messages     the messages to be processed
+     * @param subscription the subscription name
+     * @return the IDs of the accounts whose processing has failed, its messages to be redelivered
+     */
+    Set<Long> onMessages( @Nonnull List<PubsubMessage> messages, @Nonnull String subscription )
+    {
+        Map<Long, PubsubMessage> latest = new LinkedHashMap<>();
+        for ( PubsubMessage message : messages )
+        {
+            PubsubCommand command = accountCommand( message, subscription );
+            if ( command != null
+                    && !marks.isStale( command.getAccountId(), publishTime( message ), message.getMessageId() ) )
+            {
+                latest.merge( command.getAccountId(), message,
+                        ( current, next ) -> publishTime( next ).isBefore( publishTime( current ) ) ? current : next );
+            }
+        }
+
+        LOGGER.info( "[" + subscription + "] " + messages.size() + " message(s) collapsed to "
+                + latest.size() + " account(s)" );
+
+        Set<Long> failed = new HashSet<>();
+        Map<Long, AccountSnapshot> snapshots = new LinkedHashMap<>();
+
+        latest.forEach( ( accountId, message ) -> {
+            try
+            {
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                byte[] json = Base64.decodeBase64( message.getData() );
+                AccountSnapshot account = AccountSnapshot.parse( json );
+                long hash = account.projectionHash();
+                metrics.parse( subscription, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+
+                remoteCache.put( accountId,
+                        new PubsubCommand( message ).getAccountIdentityId(),
+                        json,
+                        publishTime( message ) );
+
+                if ( marks.isUnchanged( accountId, hash ) )
+                {
+                    marks.applied( accountId, publishTime( message ), message.getMessageId(), hash );
+                }
+                else
+                {
+                    snapshots.put( accountId, account );
+                }
+            }
+            catch ( IOException e )
+            {
+                // not parsable message never will be, drop it
+                LOGGER.error( "Account payload is not parsable for account ID " + accountId, e );
+            }
+        } );
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Map<Long, LocalAccount> loaded = snapshots.isEmpty() ? new HashMap<>() : lap.getAll( snapshots.keySet() );
+        Set<Long> toUpdate = new LinkedHashSet<>();
+
+        snapshots.forEach( ( accountId, account ) -> {
+            PubsubMessage message = latest.get( accountId );
+            try
+            {
+                LocalAccount localAccount = loaded.get( accountId );
+                if ( localAccount == null )
+                {
+                    localAccount = lap.initGet( builder( new PubsubCommand( message ) ) );
+                }
+                if ( isChanged( localAccount, account ) )
+                {
+                    toUpdate.add( accountId );
+                }
+            }
+            catch ( RuntimeException e )
+            {
+                LOGGER.error( "Loading of the local account has failed for account ID " + accountId, e );
+                failed.add( accountId );
+            }
+        } );
+
+        Map<Long, LocalAccount> fresh = new HashMap<>();
+        try
+        {
+            // the loaded instances are shared with concurrent readers, the changes are applied to own instances
+            fresh = toUpdate.isEmpty() ? fresh : lap.getAllForUpdate( toUpdate );
+        }
+        catch ( RuntimeException e )
+        {
+            LOGGER.error( "Loading of " + toUpdate.size() + " local account(s) to be changed has failed", e );
+            failed.addAll( toUpdate );
+        }
+        metrics.load( subscription, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+
+        List<LocalAccount> changed = new ArrayList<>();
+        fresh.forEach( ( accountId, localAccount ) -> {
+            PubsubMessage message = latest.get( accountId );
+            try
+            {
+                Instant publishTime = publishTime( message );
+                if ( marks.isStale( localAccount, publishTime, message.getMessageId() ) )
+                {
+                    return;
+                }
+
+                if ( process( localAccount, snapshots.get( accountId ) ) )
+                {
+                    localAccount.setChangeApplied( publishTime, message.getMessageId() );
+                    changed.add( localAccount );
+                }
+            }
+            catch ( RuntimeException e )
+            {
+                LOGGER.error( "Processing of the account change has failed for account ID " + accountId, e );
+                failed.add( accountId );
+            }
+        } );
+
+        if ( !changed.isEmpty() )
+        {
+            save( changed, latest, failed, subscription );
+        }
+
+        snapshots.forEach( ( accountId, account ) -> {
+            if ( !failed.contains( accountId ) )
+            {
+                PubsubMessage message = latest.get( accountId );
+                Instant publishTime = publishTime( message );
+                marks.applied( accountId, publishTime, message.getMessageId(), account.projectionHash() );
+            }
+        } );
+
+        return failed;
+    }
+
+    /**
+     * Saves the changed accounts with multi-entity puts. The accounts are loaded and changed without
+     * holding the locks, just the save is serialized with the concurrent updates of the same account.
+     * The account whose later message has been applied meanwhile is not saved.
+     */
+    private void save( @Nonnull List<LocalAccount> changed,
+                       @Nonnull Map<Long, PubsubMessage> latest,
+                       @Nonnull Set<Long> failed,
+                       @Nonnull String subscription )
+    {
+        List<Long> accountIds = changed.stream().map( LocalAccount::getAccountId ).collect( Collectors.toList() );
+        List<Lock> acquired = locks.lockAll( accountIds );
+        try
+        {
+            List<LocalAccount> current = new ArrayList<>();
+            for ( LocalAccount localAccount : changed )
+            {
+                PubsubMessage message = latest.get( localAccount.getAccountId() );
+                if ( marks.isStale( localAccount.getAccountId(), publishTime( message ), message.getMessageId() ) )
+                {
+                    LOGGER.info( "Account ID " + localAccount.getAccountId() + " has been updated meanwhile" );
+                    continue;
+                }
+                current.add( localAccount );
+            }
+
+            if ( current.isEmpty() )
+            {
+                return;
+            }
+
+            try
+            {
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                LocalAccount.saveAll( current );
+                metrics.save( subscription, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+            }
+            catch ( RuntimeException e )
+            {
+                LOGGER.error( "Batch save of " + current.size() + " account(s) has failed", e );
+                current.forEach( localAccount -> failed.add( localAccount.getAccountId() ) );
+            }
+            current.forEach( cache::invalidate );
+        }
+        finally
+        {
+            AccountLocks.unlockAll( acquired );
+        }
+    }
+
+    /**
+     * Validates the message and returns its command if the message is an {@link Account} change.
+     *
+     * @param message      the incoming message
+     * @param subscription the subscription name the metrics are recorded under
+     * @return the command or {@code null} if the message is not valid or not interested
+     */
+    private PubsubCommand accountCommand( @Nonnull PubsubMessage message, @Nonnull String subscription )
+    {
+        PubsubCommand command = new PubsubCommand( message );
+        String[] mandatory = {DATA_TYPE, ENCODED_UNIQUE_KEY, ACCOUNT_UNIQUE_ID, ACCOUNT_EMAIL, ACCOUNT_IDENTITY_ID};
+        if ( !command.validate( mandatory ) )
+        {
+            LOGGER.error( "Some of the mandatory attributes "
+                    + Arrays.toString( mandatory )
+                    + " are missing, incoming attributes: "
+                    + message.getAttributes() );
+            metrics.invalid( subscription );
+            return null;
+        }
+
+        String dataType = command.getDataType();
+        if ( !Account.class.getSimpleName().equals( dataType ) )
+        {
+            LOGGER.info( "Uninterested data type '" + dataType + "'" );
+            metrics.uninterested( subscription );
+            return null;
+        }
+        return command;
+    }
+
+    private static LocalAccountProvider.Builder builder( @Nonnull PubsubCommand command )
+    {
+        return new LocalAccountProvider.Builder()
+                .accountId( command.getAccountId() )
                 .email( command.getAccountEmail() )
-                .identityId( command.getAccountIdentityId() ) );
+                .identityId( command.getAccountIdentityId() );
+    }
+
+    /**
+     * Returns the message publish time or {@link Instant#EPOCH} if missing or not parsable.
+     */
+    static Instant publishTime( @Nonnull PubsubMessage message )
+    {
+        String publishTime = message.getPublishTime();
+        if ( Strings.isNullOrEmpty( publishTime ) )
+        {
+            return Instant.EPOCH;
+        }
 
-        if ( Account.class.getSimpleName().equals( dataType ) )
+        try
+        {
+            return Instant.parse( publishTime );
+        }
+        catch ( DateTimeParseException e )
         {
-            process( localAccount, account );
+            LOGGER.warn( "Unparsable publish time '" + publishTime + "'" );
+            return Instant.EPOCH;
         }
     }
 
-    private void process( @Nonnull LocalAccount localAccount, @Nonnull Account account )
+    /**
+     * Checks whether any of the remote account properties differs from the local account,
+     * the same way as {@link #process(LocalAccount, AccountSnapshot)} does, but without change.
+     *
+     * @return true if the local account is going to be changed
+     */
+    private static boolean isChanged( @Nonnull LocalAccount localAccount, @Nonnull AccountSnapshot account )
+    {
+        String remoteZoneId = account.getZoneId();
+        if ( !Strings.isNullOrEmpty( remoteZoneId ) && !ZoneId.of( remoteZoneId ).equals( localAccount.getZoneId() ) )
+        {
+            return true;
+        }
+
+        String remoteLoginEmail = account.getEmail();
+        if ( remoteLoginEmail != null && !remoteLoginEmail.equalsIgnoreCase( localAccount.getEmail() ) )
+        {
+            return true;
+        }
+
+        String remoteLocale = account.getLocale();
+        if ( remoteLocale != null && !LocaleUtils.toLocale( remoteLocale ).equals( localAccount.getLocale() ) )
+        {
+            return true;
+        }
+
+        String remoteDomicile = account.getDomicile();
+        return !Strings.isNullOrEmpty( remoteDomicile ) && !remoteDomicile.equals( localAccount.getRawDomicile() );
+    }
+
+    /**
+     * Applies the remote account changes to the local account.
+     *
+     * @return true if the local account has changed and needs to be saved
+     */
+    private boolean process( @Nonnull LocalAccount localAccount, @Nonnull AccountSnapshot account )
     {
         boolean updateAccount = false;
 
@@ -114,7 +548,7 @@ public class AccountStewardChangesSubscription
 
         // Current, the most up to date login email, taken from the remote account
         String remoteLoginEmail = account.getEmail();
-        if ( !remoteLoginEmail.equalsIgnoreCase( localAccount.getEmail() ) )
+        if ( remoteLoginEmail != null && !remoteLoginEmail.equalsIgnoreCase( localAccount.getEmail() ) )
         {
             LOGGER.info( "Login Email has changed from '" + localAccount.getEmail() + "' to '" + remoteLoginEmail + "'" );
             localAccount.setEmail( remoteLoginEmail );
@@ -130,9 +564,15 @@ public class AccountStewardChangesSubscription
             updateAccount = true;
         }
 
-        if ( updateAccount )
+        // Current, the most up to date business domicile, taken from the remote account
+        String remoteDomicile = account.getDomicile();
+        if ( !Strings.isNullOrEmpty( remoteDomicile ) && !remoteDomicile.equals( localAccount.getRawDomicile() ) )
         {
-            localAccount.save();
+            LOGGER.info( "Domicile has changed from '" + localAccount.getRawDomicile() + "' to '" + remoteDomicile + "'" );
+            localAccount.setDomicile( remoteDomicile );
+            updateAccount = true;
         }
+
+        return updateAccount;
     }
 }
@@ -6,6 +6,8 @@ import biz.turnonline.ecosystem.steward.model.Account;
 import biz.turnonline.ecosystem.steward.model.AccountBusiness;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.ObjectifyService;
 import com.googlecode.objectify.annotation.Cache;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Ignore;
@@ -18,9 +20,19 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.googlecode.objectify.ObjectifyService.ofy;
@@ -46,6 +58,10 @@ public class LocalAccount
 
     private static final long serialVersionUID = 1L;
 
+    private static final LongAdder TRANSACTIONS = new LongAdder();
+
+    private static final LongAdder TRANSACTION_ATTEMPTS = new LongAdder();
+
     private String locale;
 
     @Index
@@ -58,9 +74,25 @@ public class LocalAccount
 
     private String domicile;
 
+    /**
+     * The publish time (epoch millis) of the last applied 'account.changes' message.
+     */
+    private Long changePublishTime;
+
+    /**
+     * The message ID of the last applied 'account.changes' message.
+     */
+    private String changeMessageId;
+
     @Ignore
     private transient Account tAccount;
 
+    /**
+     * The login email as it was before {@link #setEmail(String)} call, its lookup to be removed on save.
+     */
+    @Ignore
+    private transient String formerEmail;
+
     LocalAccount()
     {
     }
@@ -159,7 +191,12 @@ public class LocalAccount
      */
     void setEmail( @Nonnull String email )
     {
-        this.email = checkNotNull( email, "Login email can't be null" );
+        checkNotNull( email, "Login email can't be null" );
+        if ( formerEmail == null && this.email != null && !this.email.equals( email ) )
+        {
+            formerEmail = this.email;
+        }
+        this.email = email;
     }
 
     /**
@@ -296,6 +333,16 @@ public class LocalAccount
         return getDomicile( null );
     }
 
+    /**
+     * Returns the domicile value as stored, without default.
+     *
+     * @return the ISO 3166 alpha-2 country code or {@code null}
+     */
+    String getRawDomicile()
+    {
+        return domicile;
+    }
+
     /**
      * Sets the ISO 3166 alpha-2 country code that represents account domicile.
      *
@@ -306,6 +353,49 @@ public class LocalAccount
         this.domicile = domicile;
     }
 
+    /**
+     * Returns the publish time of the last applied remote account change.
+     *
+     * @return the publish time or {@code null} if no change has been applied yet
+     */
+    Instant getChangePublishTime()
+    {
+        return changePublishTime == null ? null : Instant.ofEpochMilli( changePublishTime );
+    }
+
+    /**
+     * Returns the Pub/Sub message ID of the last applied remote account change.
+     *
+     * @return the message ID or {@code null} if no change has been applied yet
+     */
+    String getChangeMessageId()
+    {
+        return changeMessageId;
+    }
+
+    /**
+     * Records the remote account change as applied to this account.
+     *
+     * @param publishTime the message publish time
+     * @param messageId   the message ID
+     */
+    void setChangeApplied( @Nonnull Instant publishTime, @Nullable String messageId )
+    {
+        this.changePublishTime = checkNotNull( publishTime, "Publish time can't be null" ).toEpochMilli();
+        this.changeMessageId = messageId;
+    }
+
+    /**
+     * Returns the hash of the properties managed by the remote account.
+     *
+     * @return the projection hash
+     * @see AccountSnapshot#projectionHash(String, String, String, String)
+     */
+    long projectionHash()
+    {
+        return AccountSnapshot.projectionHash( email, locale, zone, domicile );
+    }
+
     @Override
     public void save()
     {
@@ -314,13 +404,121 @@ public class LocalAccount
             String msg = "The Account ID is being expected to be set in advance from remote Account.";
             throw new IllegalArgumentException( msg );
         }
-        ofy().transact( () -> ofy().save().entity( this ).now() );
+        TRANSACTIONS.increment();
+        ofy().transact( () -> {
+            TRANSACTION_ATTEMPTS.increment();
+            ofy().save().entities( this,
+                    new AccountEmailLookup( email, getId() ),
+                    new AccountIdentityLookup( identityId, getId() ) ).now();
+
+            deleteFormerEmailLookup();
+        } );
+        formerEmail = null;
+    }
+
+    /**
+     * Returns the number of {@link #save()} transaction retries (due to contention) within this instance.
+     *
+     * @return the transaction retry count
+     */
+    public static long transactionRetryCount()
+    {
+        return Math.max( 0, TRANSACTION_ATTEMPTS.sum() - TRANSACTIONS.sum() );
+    }
+
+    /**
+     * Deletes the lookup of the former login email, but only if it still points to this account
+     * and differs from the current one (comparing case insensitive).
+     */
+    private void deleteFormerEmailLookup()
+    {
+        if ( formerEmail == null
+                || LocalAccountCache.normalize( formerEmail ).equals( LocalAccountCache.normalize( email ) ) )
+        {
+            return;
+        }
+
+        Key<AccountEmailLookup> key = AccountEmailLookup.key( formerEmail );
+        AccountEmailLookup lookup = ofy().load().key( key ).now();
+        if ( lookup != null && Key.create( this ).equals( lookup.getAccount() ) )
+        {
+            ofy().delete().key( key ).now();
+        }
+    }
+
+    /**
+     * Saves all given accounts (together with their lookups) with multi-entity puts, non-transactional.
+     * Intended for bulk updates, where a single transaction would exceed the entity groups limit.
+     *
+     * @param accounts the accounts to be saved, each with Account ID set
+     */
+    static void saveAll( @Nonnull Collection<LocalAccount> accounts )
+    {
+        List<Object> entities = new ArrayList<>();
+        Map<Key<AccountEmailLookup>, LocalAccount> former = new HashMap<>();
+
+        for ( LocalAccount account : accounts )
+        {
+            if ( account.getId() == null )
+            {
+                String msg = "The Account ID is being expected to be set in advance from remote Account.";
+                throw new IllegalArgumentException( msg );
+            }
+
+            entities.add( account );
+            entities.add( new AccountEmailLookup( account.email, account.getId() ) );
+            entities.add( new AccountIdentityLookup( account.identityId, account.getId() ) );
+
+            if ( account.formerEmail != null && !LocalAccountCache.normalize( account.formerEmail )
+                    .equals( LocalAccountCache.normalize( account.email ) ) )
+            {
+                former.put( AccountEmailLookup.key( account.formerEmail ), account );
+            }
+        }
+
+        ofy().save().entities( entities ).now();
+
+        if ( !former.isEmpty() )
+        {
+            List<Key<AccountEmailLookup>> delete = new ArrayList<>();
+            ofy().load().keys( former.keySet() ).forEach( ( key, lookup ) -> {
+                if ( Key.create( former.get( key ) ).equals( lookup.getAccount() ) )
+                {
+                    delete.add( key );
+                }
+            } );
+            ofy().delete().keys( delete ).now();
+        }
+
+        accounts.forEach( account -> account.formerEmail = null );
+    }
+
+    /**
+     * Loads the accounts within a new Objectify session. The returned instances are shared neither with
+     * the current session nor with {@link LocalAccountCache}, thus safe to be changed.
+     *
+     * @param ids the IDs of the accounts to be loaded
+     * @return the loaded accounts by ID, missing accounts are omitted
+     */
+    static Map<Long, LocalAccount> loadFresh( @Nonnull Collection<Long> ids )
+    {
+        checkNotNull( ids, "Account IDs can't be null" );
+        try ( Closeable ignored = ObjectifyService.begin() )
+        {
+            return new HashMap<>( ofy().load().type( LocalAccount.class ).ids( ids ) );
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
     }
 
     @Override
     public void delete()
     {
-        ofy().transact( () -> ofy().delete().entity( this ).now() );
+        ofy().transact( () -> ofy().delete().keys( Key.create( this ),
+                AccountEmailLookup.key( email ),
+                AccountIdentityLookup.key( identityId ) ).now() );
     }
 
     @Override
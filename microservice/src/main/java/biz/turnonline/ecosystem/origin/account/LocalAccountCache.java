@@ -0,0 +1,245 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The bounded in-process (first level) cache of the {@link LocalAccount} instances,
+ * sitting in front of the Objectify global cache (memcache) and datastore.
+ * <p>
+ * The instances are kept by account ID, while the email and identity ID are served via secondary indexes
+ * pointing to the account ID. An entry is considered valid only if the cached account still matches
+ * the requested email or identity ID, thus a stale secondary index entry behaves as a miss.
+ * <p>
+ * The cache is local to the instance, thus entries are limited by {@link #EXPIRATION_MINUTES}
+ * in order to pick up changes made by other instances in a reasonable time.
+ * <p>
+ * The cached instances are shared by concurrent requests and must not be changed. An account to be changed
+ * has to be invalidated first and loaded again, see {@link LocalAccountProviderImpl#getForUpdate(Long)}.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class LocalAccountCache
+{
+    static final int MAXIMUM_SIZE = 5000;
+
+    static final long EXPIRATION_MINUTES = 5;
+
+    private final Cache<Long, LocalAccount> byId;
+
+    private final Cache<String, Long> byEmail;
+
+    private final Cache<String, Long> byIdentityId;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    LocalAccountCache()
+    {
+        byId = CacheBuilder.newBuilder()
+                .maximumSize( MAXIMUM_SIZE )
+                .expireAfterWrite( EXPIRATION_MINUTES, TimeUnit.MINUTES )
+                .build();
+
+        byEmail = CacheBuilder.newBuilder()
+                .maximumSize( MAXIMUM_SIZE )
+                .expireAfterWrite( EXPIRATION_MINUTES, TimeUnit.MINUTES )
+                .build();
+
+        byIdentityId = CacheBuilder.newBuilder()
+                .maximumSize( MAXIMUM_SIZE )
+                .expireAfterWrite( EXPIRATION_MINUTES, TimeUnit.MINUTES )
+                .build();
+    }
+
+    /**
+     * Normalizes the login email to be used as a key.
+     *
+     * @param email the login email
+     * @return the lower case email
+     */
+    static String normalize( @Nonnull String email )
+    {
+        return email.trim().toLowerCase( Locale.ENGLISH );
+    }
+
+    /**
+     * Returns the cached account identified by account ID.
+     *
+     * @param id the account unique identification
+     * @return the cached account or {@code null} if not cached
+     */
+    LocalAccount get( @Nonnull Long id )
+    {
+        return record( byId.getIfPresent( checkNotNull( id, "Account ID can't be null" ) ) );
+    }
+
+    /**
+     * Returns the cached account identified by login email.
+     *
+     * @param email the login email address of the account
+     * @return the cached account or {@code null} if not cached
+     */
+    LocalAccount getByEmail( @Nonnull String email )
+    {
+        String key = normalize( checkNotNull( email, "Account email can't be null" ) );
+        Long id = byEmail.getIfPresent( key );
+        LocalAccount account = id == null ? null : byId.getIfPresent( id );
+
+        if ( account == null || account.getEmail() == null || !key.equals( normalize( account.getEmail() ) ) )
+        {
+            return record( null );
+        }
+        return record( account );
+    }
+
+    /**
+     * Returns the cached account identified by identity ID.
+     *
+     * @param identityId the account unique identification within login provider system
+     * @return the cached account or {@code null} if not cached
+     */
+    LocalAccount getByIdentityId( @Nonnull String identityId )
+    {
+        checkNotNull( identityId, "Account Identity ID can't be null" );
+        Long id = byIdentityId.getIfPresent( identityId );
+        LocalAccount account = id == null ? null : byId.getIfPresent( id );
+
+        if ( account == null || !identityId.equals( account.getIdentityId() ) )
+        {
+            return record( null );
+        }
+        return record( account );
+    }
+
+    /**
+     * Puts the account to the cache. An account without ID will be ignored.
+     *
+     * @param account the account to be cached, might be {@code null}
+     * @return the same account instance
+     */
+    LocalAccount put( @Nullable LocalAccount account )
+    {
+        if ( account == null || account.getId() == null )
+        {
+            return account;
+        }
+
+        Long id = account.getId();
+        byId.put( id, account );
+
+        if ( account.getEmail() != null )
+        {
+            byEmail.put( normalize( account.getEmail() ), id );
+        }
+        if ( account.getIdentityId() != null )
+        {
+            byIdentityId.put( account.getIdentityId(), id );
+        }
+        return account;
+    }
+
+    /**
+     * Removes the account and all of its secondary keys from the cache.
+     *
+     * @param account the account to be removed
+     */
+    void invalidate( @Nonnull LocalAccount account )
+    {
+        checkNotNull( account, "Local account can't be null" );
+        if ( account.getId() != null )
+        {
+            byId.invalidate( account.getId() );
+        }
+        if ( account.getEmail() != null )
+        {
+            byEmail.invalidate( normalize( account.getEmail() ) );
+        }
+        if ( account.getIdentityId() != null )
+        {
+            byIdentityId.invalidate( account.getIdentityId() );
+        }
+    }
+
+    /**
+     * Removes the account identified by account ID and all of its secondary keys from the cache.
+     *
+     * @param id the account unique identification
+     */
+    void invalidate( @Nonnull Long id )
+    {
+        LocalAccount account = byId.getIfPresent( checkNotNull( id, "Account ID can't be null" ) );
+        if ( account == null )
+        {
+            byId.invalidate( id );
+        }
+        else
+        {
+            invalidate( account );
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void invalidateAll()
+    {
+        byId.invalidateAll();
+        byEmail.invalidateAll();
+        byIdentityId.invalidateAll();
+    }
+
+    private LocalAccount record( @Nullable LocalAccount account )
+    {
+        if ( account == null )
+        {
+            misses.increment();
+        }
+        else
+        {
+            hits.increment();
+        }
+        return account;
+    }
+
+    /**
+     * Returns the number of lookups served from the cache.
+     *
+     * @return the hit count
+     */
+    public long hitCount()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups not served from the cache.
+     *
+     * @return the miss count
+     */
+    public long missCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the current number of the cached accounts.
+     *
+     * @return the number of cached accounts
+     */
+    public long size()
+    {
+        return byId.size();
+    }
+}
@@ -1,14 +1,36 @@
 package biz.turnonline.ecosystem.origin.account;
 
 import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
+import com.google.appengine.api.ThreadManager;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.ObjectifyService;
+import org.ctoolkit.restapi.client.NotFoundException;
 import org.ctoolkit.restapi.client.RestFacade;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.googlecode.objectify.ObjectifyService.ofy;
@@ -24,12 +46,44 @@ public class LocalAccountProviderImpl
 {
     private static final Logger LOGGER = LoggerFactory.getLogger( LocalAccountProviderImpl.class );
 
-    private final RestFacade facade;
+    /**
+     * The maximum number of values of the datastore 'in' query filter.
+     */
+    private static final int EMAIL_IN_FILTER_LIMIT = 30;
+
+    /**
+     * The maximum time a concurrent first time call waits for the creation already in flight.
+     */
+    private static final long CREATION_WAIT_MILLIS = 10000;
+
+    /**
+     * Needed only to initialize a new account, thus provisioned lazily.
+     */
+    private final Provider<RestFacade> facade;
+
+    private final LocalAccountCache cache;
+
+    private final NotFoundAccountCache notFound;
+
+    private final RecentAccounts recent;
+
+    private final SingleFlight<LocalAccount> creation = new SingleFlight<>( CREATION_WAIT_MILLIS );
+
+    /**
+     * Executes each task in a new thread bound to the current request, such thread can't outlive the request.
+     */
+    private final Executor requestThreads = command -> ThreadManager.createThreadForCurrentRequest( command ).start();
 
     @Inject
-    LocalAccountProviderImpl( RestFacade facade )
+    LocalAccountProviderImpl( Provider<RestFacade> facade,
+                              LocalAccountCache cache,
+                              NotFoundAccountCache notFound,
+                              RecentAccounts recent )
     {
         this.facade = facade;
+        this.cache = cache;
+        this.notFound = notFound;
+        this.recent = recent;
     }
 
     @Override
@@ -42,7 +96,18 @@ public class LocalAccountProviderImpl
         LocalAccount localAccount;
         if ( builder.getAccountId() == null )
         {
-            localAccount = get( builder.getEmail() );
+            // identity ID remains same even if user has changed login email, thus preferred
+            localAccount = cache.getByIdentityId( builder.getIdentityId() );
+            if ( localAccount == null )
+            {
+                localAccount = loadByIdentityId( builder.getIdentityId() );
+            }
+            if ( localAccount == null )
+            {
+                // checked after the lookup by key, an account already created locally is never reported as not found
+                checkNotFound( builder );
+                localAccount = get( builder.getEmail() );
+            }
         }
         else
         {
@@ -52,33 +117,388 @@ public class LocalAccountProviderImpl
 
         if ( localAccount == null )
         {
-            Stopwatch stopwatch = Stopwatch.createStarted();
-            localAccount = new LocalAccount( builder );
-            localAccount.init( facade );
-            localAccount.save();
-            stopwatch.stop();
-            LOGGER.info( "Local account just has been created (" + stopwatch + "): " + localAccount );
+            // concurrent first time calls for the same account wait for a single remote fetch and write
+            localAccount = creation.execute( flightKey( builder ), () -> create( builder ) );
+        }
+
+        return localAccount;
+    }
+
+    @Override
+    public CompletableFuture<LocalAccount> initGetAsync( @Nonnull Builder builder )
+    {
+        checkNotNull( builder, "Builder can't be null" );
+
+        LocalAccount localAccount = builder.getAccountId() == null
+                ? cache.getByIdentityId( checkNotNull( builder.getIdentityId(), "Account Identity ID is mandatory" ) )
+                : cache.get( builder.getAccountId() );
+
+        if ( localAccount != null )
+        {
+            return CompletableFuture.completedFuture( localAccount );
+        }
+        return supplyAsync( () -> initGet( builder ) );
+    }
+
+    @Override
+    public CompletableFuture<LocalAccount> getAsync( @Nonnull String email )
+    {
+        LocalAccount localAccount = cache.getByEmail( email );
+        if ( localAccount != null )
+        {
+            return CompletableFuture.completedFuture( localAccount );
+        }
+        return supplyAsync( () -> get( email ) );
+    }
+
+    @Override
+    public CompletableFuture<LocalAccount> getAsync( @Nonnull Long id )
+    {
+        LocalAccount localAccount = cache.get( checkNotNull( id, "Account ID can't be null" ) );
+        if ( localAccount != null )
+        {
+            return CompletableFuture.completedFuture( localAccount );
+        }
+        return supplyAsync( () -> get( id ) );
+    }
+
+    /**
+     * Runs the retrieval in a request thread with its own Objectify context,
+     * as the Objectify session of the calling thread is not thread safe.
+     */
+    private <T> CompletableFuture<T> supplyAsync( @Nonnull Supplier<T> supplier )
+    {
+        return CompletableFuture.supplyAsync( () -> {
+            try ( Closeable ignored = ObjectifyService.begin() )
+            {
+                return supplier.get();
+            }
+            catch ( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+        }, requestThreads );
+    }
+
+    private LocalAccount create( @Nonnull Builder builder )
+    {
+        // the account might have been created by the call that has just left the flight
+        LocalAccount localAccount = builder.getAccountId() == null
+                ? cache.getByIdentityId( builder.getIdentityId() )
+                : cache.get( builder.getAccountId() );
+
+        if ( localAccount != null )
+        {
+            return localAccount;
         }
 
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        localAccount = new LocalAccount( builder );
+        try
+        {
+            localAccount.init( facade.get() );
+        }
+        catch ( NotFoundException e )
+        {
+            notFound.put( builder );
+            throw e;
+        }
+        localAccount.save();
+        cached( localAccount );
+        stopwatch.stop();
+        LOGGER.info( "Local account just has been created (" + stopwatch + "): " + localAccount );
+
         return localAccount;
     }
 
+    /**
+     * Puts the account loaded from the datastore to the in-process cache and marks it as recently active.
+     */
+    private LocalAccount cached( @Nullable LocalAccount localAccount )
+    {
+        if ( localAccount != null && localAccount.getId() != null )
+        {
+            recent.touch( localAccount.getId() );
+        }
+        return cache.put( localAccount );
+    }
+
+    @Override
+    public LocalAccount getForUpdate( @Nonnull Long id )
+    {
+        checkNotNull( id, "Account ID can't be null" );
+        return getAllForUpdate( Collections.singletonList( id ) ).get( id );
+    }
+
+    @Override
+    public Map<Long, LocalAccount> getAllForUpdate( @Nonnull Collection<Long> ids )
+    {
+        checkNotNull( ids, "Collection of IDs can't be null" );
+
+        // the cached instances are shared with concurrent readers, never handed out to be changed
+        ids.forEach( cache::invalidate );
+        Map<Long, LocalAccount> loaded = LocalAccount.loadFresh( ids );
+
+        Map<Long, LocalAccount> result = new LinkedHashMap<>();
+        for ( Long id : ids )
+        {
+            LocalAccount localAccount = loaded.get( id );
+            if ( localAccount != null )
+            {
+                result.put( id, localAccount );
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int preload( int limit )
+    {
+        List<Long> ids = recent.ids( limit );
+        return ids.isEmpty() ? 0 : getAll( ids ).size();
+    }
+
+    /**
+     * Throws {@link NotFoundException} if the remote account has been recently not found.
+     * Once the account ID is known (for example from Pub/Sub message) the remote account exists,
+     * thus checked only for the account identified by identity ID and email.
+     *
+     * @param builder the account identification
+     */
+    private void checkNotFound( @Nonnull Builder builder )
+    {
+        if ( notFound.isNotFound( builder ) )
+        {
+            throw new NotFoundException( "Remote account has been recently not found for " + builder );
+        }
+    }
+
+    /**
+     * The creation is keyed by all of the lookup fields, callers sharing just the email
+     * (or the identity ID) might end up with different accounts, thus never coalesced.
+     */
+    private static String flightKey( @Nonnull Builder builder )
+    {
+        return builder.getAccountId()
+                + ":" + builder.getIdentityId()
+                + ":" + LocalAccountCache.normalize( builder.getEmail() );
+    }
+
+    /**
+     * Returns the number of local account creations (remote fetch and write) executed by this instance.
+     *
+     * @return the number of executed creations
+     */
+    public long creationCount()
+    {
+        return creation.executedCount();
+    }
+
+    /**
+     * Returns the number of concurrent first time calls that have waited for the creation already in flight
+     * instead of performing their own remote fetch and write.
+     *
+     * @return the number of saved calls
+     */
+    public long coalescedCreationCount()
+    {
+        return creation.coalescedCount();
+    }
+
+    /**
+     * Returns the number of concurrent first time calls that have given up waiting for the creation in flight
+     * and performed their own remote fetch and write.
+     *
+     * @return the number of timed out waits
+     */
+    public long timedOutCreationCount()
+    {
+        return creation.timedOutCount();
+    }
+
     @Override
     public LocalAccount get( @Nonnull String email )
     {
         checkNotNull( email, "Account email can't be null" );
 
-        return ofy()
+        LocalAccount localAccount = cache.getByEmail( email );
+        if ( localAccount != null )
+        {
+            return localAccount;
+        }
+
+        AccountEmailLookup lookup = ofy().load().key( AccountEmailLookup.key( email ) ).now();
+        if ( lookup != null )
+        {
+            localAccount = ofy().load().key( lookup.getAccount() ).now();
+            if ( localAccount != null
+                    && LocalAccountCache.normalize( email ).equals( LocalAccountCache.normalize( localAccount.getEmail() ) ) )
+            {
+                return cached( localAccount );
+            }
+        }
+
+        // fallback for accounts created before the lookup has been introduced
+        localAccount = ofy()
                 .load()
                 .type( LocalAccount.class )
                 .filter( "email", email )
                 .first()
                 .now();
+
+        if ( localAccount != null )
+        {
+            LOGGER.info( "Missing lookups have been created for " + localAccount );
+            ofy().save().entities( new AccountEmailLookup( localAccount.getEmail(), localAccount.getId() ),
+                    new AccountIdentityLookup( localAccount.getIdentityId(), localAccount.getId() ) ).now();
+        }
+
+        return cached( localAccount );
+    }
+
+    /**
+     * Loads the local lightweight account entity instance identified by identity ID via its lookup.
+     *
+     * @param identityId the account unique identification within login provider system
+     * @return the local lightweight account or {@code null} if not found
+     */
+    private LocalAccount loadByIdentityId( @Nonnull String identityId )
+    {
+        AccountIdentityLookup lookup = ofy().load().key( AccountIdentityLookup.key( identityId ) ).now();
+        if ( lookup == null )
+        {
+            return null;
+        }
+
+        LocalAccount localAccount = ofy().load().key( lookup.getAccount() ).now();
+        if ( localAccount == null || !identityId.equals( localAccount.getIdentityId() ) )
+        {
+            return null;
+        }
+
+        return cached( localAccount );
     }
 
     @Override
     public LocalAccount get( @Nonnull Long id )
     {
-        return ofy().load().type( LocalAccount.class ).id( id ).now();
+        checkNotNull( id, "Account ID can't be null" );
+
+        LocalAccount localAccount = cache.get( id );
+        if ( localAccount != null )
+        {
+            return localAccount;
+        }
+
+        return cached( ofy().load().type( LocalAccount.class ).id( id ).now() );
+    }
+
+    @Override
+    public Map<Long, LocalAccount> getAll( @Nonnull Collection<Long> ids )
+    {
+        checkNotNull( ids, "Collection of account IDs can't be null" );
+
+        // keeps the order of the requested IDs, null values to be removed at the end
+        Map<Long, LocalAccount> result = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+
+        for ( Long id : ids )
+        {
+            checkNotNull( id, "Account ID can't be null" );
+            LocalAccount localAccount = cache.get( id );
+            result.put( id, localAccount );
+
+            if ( localAccount == null )
+            {
+                missing.add( id );
+            }
+        }
+
+        if ( !missing.isEmpty() )
+        {
+            Map<Long, LocalAccount> loaded = ofy().load().type( LocalAccount.class ).ids( missing );
+            loaded.forEach( ( id, localAccount ) -> result.put( id, cached( localAccount ) ) );
+        }
+
+        result.values().removeIf( Objects::isNull );
+        return result;
+    }
+
+    @Override
+    public Map<String, LocalAccount> getAllByEmail( @Nonnull Collection<String> emails )
+    {
+        checkNotNull( emails, "Collection of emails can't be null" );
+
+        // keeps the order of the requested emails, null values to be removed at the end
+        Map<String, LocalAccount> result = new LinkedHashMap<>();
+        // normalized email to all of the requested emails of the same normalized form
+        ListMultimap<String, String> missing = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+
+        for ( String email : emails )
+        {
+            checkNotNull( email, "Account email can't be null" );
+            LocalAccount localAccount = cache.getByEmail( email );
+            result.put( email, localAccount );
+
+            if ( localAccount == null )
+            {
+                missing.put( LocalAccountCache.normalize( email ), email );
+            }
+        }
+
+        if ( missing.isEmpty() )
+        {
+            return result;
+        }
+
+        // batch load of the lookups followed by batch load of the accounts
+        Map<String, AccountEmailLookup> lookups = ofy().load().type( AccountEmailLookup.class ).ids( missing.keySet() );
+        List<Key<LocalAccount>> keys = new ArrayList<>();
+        lookups.values().forEach( lookup -> keys.add( lookup.getAccount() ) );
+
+        Map<Key<LocalAccount>, LocalAccount> accounts = ofy().load().keys( keys );
+        for ( LocalAccount localAccount : accounts.values() )
+        {
+            String normalized = LocalAccountCache.normalize( localAccount.getEmail() );
+            for ( String email : missing.removeAll( normalized ) )
+            {
+                result.put( email, cached( localAccount ) );
+            }
+        }
+
+        // fallback for accounts created before the lookup has been introduced, queried in chunks
+        // as the 'in' filter is limited to EMAIL_IN_FILTER_LIMIT values
+        List<Object> backFill = new ArrayList<>();
+        for ( List<String> chunk : Iterables.partition( new ArrayList<>( missing.values() ), EMAIL_IN_FILTER_LIMIT ) )
+        {
+            List<LocalAccount> found = ofy()
+                    .load()
+                    .type( LocalAccount.class )
+                    .filter( "email in", chunk )
+                    .list();
+
+            for ( LocalAccount localAccount : found )
+            {
+                List<String> requested = missing.removeAll( LocalAccountCache.normalize( localAccount.getEmail() ) );
+                if ( requested.isEmpty() )
+                {
+                    continue;
+                }
+
+                cached( localAccount );
+                requested.forEach( email -> result.put( email, localAccount ) );
+                backFill.add( new AccountEmailLookup( localAccount.getEmail(), localAccount.getId() ) );
+                backFill.add( new AccountIdentityLookup( localAccount.getIdentityId(), localAccount.getId() ) );
+            }
+        }
+
+        if ( !backFill.isEmpty() )
+        {
+            LOGGER.info( "Missing lookups have been created for " + backFill.size() / 2 + " account(s)" );
+            ofy().save().entities( backFill ).now();
+        }
+
+        result.values().removeIf( Objects::isNull );
+        return result;
     }
 }
@@ -0,0 +1,75 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The local account retrieval statistics of this instance: in-process cache, negative cache,
+ * coalesced creations, dropped stale, duplicate or no-op 'account.changes' messages, update lock contention
+ * and save transaction retries.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class LocalAccountStats
+        implements StatsReporter
+{
+    private final LocalAccountCache cache;
+
+    private final NotFoundAccountCache notFound;
+
+    private final LocalAccountProviderImpl lap;
+
+    private final AccountChangeMarks marks;
+
+    private final AccountLocks locks;
+
+    @Inject
+    LocalAccountStats( LocalAccountCache cache,
+                       NotFoundAccountCache notFound,
+                       LocalAccountProviderImpl lap,
+                       AccountChangeMarks marks,
+                       AccountLocks locks )
+    {
+        this.cache = cache;
+        this.notFound = notFound;
+        this.lap = lap;
+        this.marks = marks;
+        this.locks = locks;
+    }
+
+    @Override
+    public String name()
+    {
+        return "localAccount";
+    }
+
+    @Override
+    public Map<String, Object> report()
+    {
+        long hits = cache.hitCount();
+        long misses = cache.missCount();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put( "cacheSize", cache.size() );
+        report.put( "cacheHits", hits );
+        report.put( "cacheMisses", misses );
+        report.put( "cacheHitRatio", hits + misses == 0 ? 0.0 : ( double ) hits / ( hits + misses ) );
+        report.put( "notFoundHits", notFound.hitCount() );
+        report.put( "creations", lap.creationCount() );
+        report.put( "coalescedCreations", lap.coalescedCreationCount() );
+        report.put( "timedOutCreations", lap.timedOutCreationCount() );
+        report.put( "staleChangesDropped", marks.staleCount() );
+        report.put( "duplicateChangesDropped", marks.duplicateCount() );
+        report.put( "unchangedSkippedLoads", marks.unchangedCount() );
+        report.put( "updateLocks", locks.acquiredCount() );
+        report.put( "updateLocksContended", locks.contendedCount() );
+        report.put( "updateLocksWaitMillis", locks.waitMillis() );
+        report.put( "transactionRetries", LocalAccount.transactionRetryCount() );
+        return report;
+    }
+}
@@ -0,0 +1,117 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+import static biz.turnonline.ecosystem.origin.api.EndpointsApiProfile.API_NAME;
+
+/**
+ * The short living negative cache of the remote accounts that have not been found,
+ * keyed by identity ID and login email.
+ * <p>
+ * Prevents repeated datastore query and remote call to the Account Steward for misconfigured
+ * clients and bots holding valid tokens, but without an account. An entry is cleared
+ * once an account sign-up message has been received for the identity. The entries are kept in memcache only,
+ * an in-process entry would not be cleared on other instances and those would keep reporting
+ * the just signed up account as not found.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class NotFoundAccountCache
+{
+    static final int EXPIRATION_SECONDS = 60;
+
+    private static final String KEY_PREFIX = API_NAME + "::AccountNotFound::";
+
+    private final MemcacheService syncCache;
+
+    private final LongAdder hits = new LongAdder();
+
+    NotFoundAccountCache()
+    {
+        syncCache = MemcacheServiceFactory.getMemcacheService();
+        syncCache.setErrorHandler( ErrorHandlers.getConsistentLogAndContinue( Level.INFO ) );
+    }
+
+    /**
+     * Checks whether the remote account has been recently reported as not found
+     * for the identity ID or email of the given builder.
+     *
+     * @param builder the account identification
+     * @return true if recently not found
+     */
+    boolean isNotFound( @Nonnull LocalAccountProvider.Builder builder )
+    {
+        Map<String, Object> cached = syncCache.getAll( keys( builder.getIdentityId(), builder.getEmail() ) );
+        if ( cached != null && !cached.isEmpty() )
+        {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the remote account as not found for the identity ID and email of the given builder.
+     *
+     * @param builder the account identification
+     */
+    void put( @Nonnull LocalAccountProvider.Builder builder )
+    {
+        Map<String, Object> values = new HashMap<>();
+        for ( String key : keys( builder.getIdentityId(), builder.getEmail() ) )
+        {
+            values.put( key, Boolean.TRUE );
+        }
+        syncCache.putAll( values, Expiration.byDeltaSeconds( EXPIRATION_SECONDS ) );
+    }
+
+    /**
+     * Clears the not found record for given identity ID and email.
+     *
+     * @param identityId the account unique identification within login provider system
+     * @param email      the login email address of the account
+     */
+    void invalidate( @Nullable String identityId, @Nullable String email )
+    {
+        syncCache.deleteAll( keys( identityId, email ) );
+    }
+
+    /**
+     * Returns the number of lookups answered as not found without datastore query and remote call.
+     *
+     * @return the hit count
+     */
+    public long hitCount()
+    {
+        return hits.sum();
+    }
+
+    private static List<String> keys( @Nullable String identityId, @Nullable String email )
+    {
+        List<String> keys = new ArrayList<>();
+        if ( identityId != null )
+        {
+            keys.add( KEY_PREFIX + "identity:" + identityId );
+        }
+        if ( email != null )
+        {
+            keys.add( KEY_PREFIX + "email:" + LocalAccountCache.normalize( email ) );
+        }
+        return keys;
+    }
+}
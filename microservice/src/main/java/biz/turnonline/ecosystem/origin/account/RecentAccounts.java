@@ -0,0 +1,131 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static biz.turnonline.ecosystem.origin.api.EndpointsApiProfile.API_NAME;
+
+/**
+ * The bounded list of the most recently active account IDs, shared by all instances via memcache.
+ * An account is considered active once it has been loaded from the datastore (in-process cache miss).
+ * Intended to preload hot accounts while an instance is being warmed up.
+ * <p>
+ * The in-process changes are merged to memcache at most once per {@link #FLUSH_INTERVAL_SECONDS}.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class RecentAccounts
+{
+    static final int MAXIMUM_SIZE = 500;
+
+    static final long FLUSH_INTERVAL_SECONDS = 60;
+
+    private static final String KEY = API_NAME + "::RecentAccounts";
+
+    private final MemcacheService syncCache;
+
+    private final Set<Long> pending = new LinkedHashSet<>();
+
+    private long lastFlush = System.nanoTime();
+
+    RecentAccounts()
+    {
+        syncCache = MemcacheServiceFactory.getMemcacheService();
+        syncCache.setErrorHandler( ErrorHandlers.getConsistentLogAndContinue( Level.INFO ) );
+    }
+
+    /**
+     * Marks the account as recently active.
+     *
+     * @param id the account unique identification
+     */
+    void touch( @Nonnull Long id )
+    {
+        List<Long> flush = null;
+
+        synchronized ( pending )
+        {
+            pending.remove( id );
+            pending.add( id );
+            if ( pending.size() > MAXIMUM_SIZE )
+            {
+                Iterator<Long> iterator = pending.iterator();
+                iterator.next();
+                iterator.remove();
+            }
+
+            long now = System.nanoTime();
+            if ( now - lastFlush > TimeUnit.SECONDS.toNanos( FLUSH_INTERVAL_SECONDS ) )
+            {
+                flush = new ArrayList<>( pending );
+                pending.clear();
+                lastFlush = now;
+            }
+        }
+
+        if ( flush != null )
+        {
+            merge( flush );
+        }
+    }
+
+    /**
+     * Returns the most recently active account IDs, the most recent first.
+     *
+     * @param limit the maximum number of IDs to be returned
+     * @return the list of account IDs
+     */
+    public List<Long> ids( int limit )
+    {
+        List<Long> ids = new ArrayList<>( cached() );
+        synchronized ( pending )
+        {
+            ids.removeAll( pending );
+            ids.addAll( pending );
+        }
+
+        List<Long> result = new ArrayList<>();
+        for ( int index = ids.size() - 1; index >= 0 && result.size() < limit; index-- )
+        {
+            result.add( ids.get( index ) );
+        }
+        return result;
+    }
+
+    /**
+     * Merges given IDs to the shared list, the oldest entries above {@link #MAXIMUM_SIZE} are being dropped.
+     * Concurrent merges might lose some IDs, that's acceptable for warm-up purpose.
+     */
+    private void merge( @Nonnull List<Long> recent )
+    {
+        LinkedHashSet<Long> ids = new LinkedHashSet<>( cached() );
+        ids.removeAll( recent );
+        ids.addAll( recent );
+
+        ArrayList<Long> value = new ArrayList<>( ids );
+        if ( value.size() > MAXIMUM_SIZE )
+        {
+            value = new ArrayList<>( value.subList( value.size() - MAXIMUM_SIZE, value.size() ) );
+        }
+        syncCache.put( KEY, value );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<Long> cached()
+    {
+        Object value = syncCache.get( KEY );
+        return value instanceof List ? ( List<Long> ) value : new ArrayList<>();
+    }
+}
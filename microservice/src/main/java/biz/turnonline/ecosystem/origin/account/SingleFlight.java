@@ -0,0 +1,152 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The per key in-flight call deduplication within single instance. The first caller (leader) executes
+ * the call, while concurrent callers (followers) with the same key wait for the leader's result.
+ * <p>
+ * The key has to identify the call as a whole (for example account ID, identity ID and email together),
+ * only the calls that would yield the same result might be coalesced.
+ * <p>
+ * Followers wait at most the configured time, then execute the call on their own,
+ * thus a stuck leader never blocks the followers beyond their own call duration.
+ *
+ * @param <V> the type of the call result
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class SingleFlight<V>
+{
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final long waitMillis;
+
+    private final LongAdder executed = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * @param waitMillis the maximum time in milliseconds a follower waits for the leader's result
+     */
+    SingleFlight( long waitMillis )
+    {
+        checkArgument( waitMillis > 0, "Wait millis must be positive" );
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Executes the call unless there is already a call in flight for the given key,
+     * in that case waits for its result. Once the leader does not finish in time, the call is executed
+     * by the follower.
+     *
+     * @param key  the key that identifies the call
+     * @param call the call to be executed by the leader
+     * @return the call result
+     * @throws RuntimeException re-thrown exception of the call (thrown to all coalesced callers)
+     */
+    V execute( @Nonnull String key, @Nonnull Supplier<V> call )
+    {
+        checkNotNull( key, "Key can't be null" );
+        checkNotNull( call, "Call can't be null" );
+
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent( key, flight );
+
+        if ( existing != null )
+        {
+            coalesced.increment();
+            return await( existing, call );
+        }
+
+        executed.increment();
+        try
+        {
+            V result = call.get();
+            flight.complete( result );
+            return result;
+        }
+        catch ( RuntimeException | Error e )
+        {
+            flight.completeExceptionally( e );
+            throw e;
+        }
+        finally
+        {
+            inFlight.remove( key, flight );
+        }
+    }
+
+    private V await( @Nonnull CompletableFuture<V> flight, @Nonnull Supplier<V> call )
+    {
+        try
+        {
+            return flight.get( waitMillis, TimeUnit.MILLISECONDS );
+        }
+        catch ( TimeoutException e )
+        {
+            timedOut.increment();
+            return call.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while waiting for in-flight call", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException )
+            {
+                throw ( RuntimeException ) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw ( Error ) cause;
+            }
+            throw new IllegalStateException( cause );
+        }
+    }
+
+    /**
+     * Returns the number of calls that have been executed by a leader.
+     *
+     * @return the number of executed calls
+     */
+    long executedCount()
+    {
+        return executed.sum();
+    }
+
+    /**
+     * Returns the number of calls saved by waiting for the result of the call already in flight.
+     *
+     * @return the number of coalesced calls
+     */
+    long coalescedCount()
+    {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of followers that have given up waiting for the leader and executed the call on their own.
+     *
+     * @return the number of timed out waits
+     */
+    long timedOutCount()
+    {
+        return timedOut.sum();
+    }
+}
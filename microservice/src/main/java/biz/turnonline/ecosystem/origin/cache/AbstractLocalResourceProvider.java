@@ -1,11 +1,15 @@
 package biz.turnonline.ecosystem.origin.cache;
 
-import com.google.api.client.json.jackson2.JacksonFactory;
-import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.api.client.json.GenericJson;
+import com.google.appengine.api.memcache.AsyncMemcacheService;
 import com.google.appengine.api.memcache.Expiration;
 import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.CasValues;
+import com.google.appengine.api.memcache.MemcacheService.IdentifiableValue;
 import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.ctoolkit.restapi.client.Identifier;
 import org.ctoolkit.restapi.client.provider.LocalResourceProvider;
 import org.slf4j.Logger;
@@ -14,17 +18,31 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.logging.Level;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static biz.turnonline.ecosystem.origin.api.EndpointsApiProfile.API_NAME;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * The local resource provider implementation that keeps cached instance
- * for specified time in memcache (default 3600 seconds). Implementation expects, the {@link #type()}
- * of the resource is serializable by <strong>Jackson 2</strong> {@link com.fasterxml.jackson.core.JsonFactory}.
+ * for specified time in memcache (default 3600 seconds, see {@link CacheOptions#withExpiration(int)}).
+ * Implementation expects, the {@link #type()} of the resource is serializable by <strong>Jackson 2</strong>
+ * {@link com.fasterxml.jackson.core.JsonFactory}.
+ * The value is stored as JSON string by default, or in a binary format of the {@link CacheCodec},
+ * see {@link CacheOptions#withCodec(CacheCodec, int)}.
  * <p>
  * In order to bind a concrete type of the resource to be memcached, implement your own
  * {@link AbstractLocalResourceProvider} and declare following in Guice module, for example:
@@ -44,6 +62,32 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *                     .finish();
  * }
  * </pre>
+ * Optionally, already deserialized instances might be kept in-process by the near cache in front
+ * of the memcache, see {@link CacheOptions#withNearCache(long, int)}. The instance read from memcache
+ * is near cached no longer than the remaining lifetime of the memcache value carried by the binary value,
+ * the JSON string value is not near cached on read. The near cache is per instance,
+ * thus {@link #invalidate(Identifier)} evicts the entry from the current instance and from memcache,
+ * while other instances keep serving theirs until the near cache time to live expires.
+ * <p>
+ * Each binary value carries its version, the time it has been up to date at (see {@link CacheValues}).
+ * An existing value is replaced only by a newer one (compare-and-set), thus the instance fetched
+ * by the remote call before a concurrent update never overwrites the updated value.
+ * The instance persisted after the remote call is versioned {@link #LEASE_SECONDS} back, the remote call
+ * is expected to take no longer. The JSON string carries no version, thus an existing value is never replaced
+ * by {@link #persist(Object, Identifier, Map, Locale, Long)} and {@link #persistJson(byte[], Collection, long, Long)}
+ * evicts it instead.
+ * <p>
+ * With {@link CacheOptions#withAsyncWrites(long)} the memcache put does not block the caller,
+ * the serialization still runs on the caller thread. The repeated write of the same value within the coalescing
+ * window is skipped. Asynchronous put only adds a missing value, the refreshed soft expired value is written
+ * synchronously.
+ * <p>
+ * With {@link CacheOptions#withSoftExpiry(int, long)} a hot value does not expire for all callers at once.
+ * Once soft expired, the single caller acquiring the memcache lease gets a cache miss and refreshes the value
+ * by the remote call (the rest-facade persists it), everyone else keeps getting the stale value meanwhile.
+ * <p>
+ * All of the cached instances of the type are invalidated at once by {@link #invalidateAll()},
+ * bumping the generation number being the part of the key.
  *
  * @param <T> the type of the resource to be cached
  * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
@@ -51,14 +95,87 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public abstract class AbstractLocalResourceProvider<T>
         implements LocalResourceProvider<T>
 {
+    /**
+     * The time to hold the refresh lease, enough for the remote call.
+     */
+    static final int LEASE_SECONDS = 10;
+
+    private static final int CAS_ATTEMPTS = 3;
+
     private static final Logger LOGGER = LoggerFactory.getLogger( AbstractLocalResourceProvider.class );
 
     private final MemcacheService syncCache;
 
+    private final AsyncMemcacheService asyncCache;
+
+    private final WriteCoalescer coalescer;
+
+    private final NearCache<T> nearCache;
+
+    private final CacheValues values;
+
+    private final SoftExpiry softExpiry;
+
+    private final int expirationSeconds;
+
+    private final CacheGeneration generation;
+
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    /**
+     * The keys whose refresh lease has been acquired by this instance, the refreshed value must replace the stale one.
+     */
+    private final Cache<String, Boolean> refreshing = CacheBuilder.newBuilder()
+            .expireAfterWrite( LEASE_SECONDS, TimeUnit.SECONDS )
+            .build();
+
     AbstractLocalResourceProvider()
     {
+        this( CacheOptions.defaults() );
+    }
+
+    AbstractLocalResourceProvider( @Nonnull CacheOptions options )
+    {
+        checkNotNull( options, "Cache options can't be null" );
+
         syncCache = MemcacheServiceFactory.getMemcacheService();
-        syncCache.setErrorHandler( ErrorHandlers.getConsistentLogAndContinue( Level.INFO ) );
+        syncCache.setErrorHandler( new CountingErrorHandler( metrics ) );
+        values = new CacheValues( options.getCodec(), options.getCompressionThreshold() );
+        expirationSeconds = options.getExpirationSeconds();
+        generation = new CacheGeneration( syncCache, API_NAME + "::" + type().getSimpleName() + "::generation" );
+
+        if ( options.getSoftExpirySeconds() > 0 )
+        {
+            checkArgument( options.getCodec() != null, "Soft expiry requires the codec" );
+            softExpiry = new SoftExpiry( options.getSoftExpirySeconds() * 1000L,
+                    options.getEarlyRefreshMillis(),
+                    expirationSeconds * 1000L );
+        }
+        else
+        {
+            softExpiry = null;
+        }
+
+        if ( options.isAsyncWrites() )
+        {
+            asyncCache = MemcacheServiceFactory.getAsyncMemcacheService();
+            asyncCache.setErrorHandler( new CountingErrorHandler( metrics ) );
+            coalescer = options.getCoalescingMillis() > 0 ? new WriteCoalescer( options.getCoalescingMillis() ) : null;
+        }
+        else
+        {
+            asyncCache = null;
+            coalescer = null;
+        }
+
+        if ( options.isNearCache() )
+        {
+            nearCache = new NearCache<>( options.getNearCacheSize(), options.getNearCacheSeconds() );
+        }
+        else
+        {
+            nearCache = null;
+        }
     }
 
     @Override
@@ -67,20 +184,230 @@ public abstract class AbstractLocalResourceProvider<T>
                   @Nullable Locale locale )
     {
         String key = fullKey( identifier );
-        String json = ( String ) syncCache.get( key );
-        if ( json == null )
+        if ( nearCache != null )
+        {
+            T cached = nearCache.get( key );
+            if ( cached != null )
+            {
+                metrics.nearHit();
+                return copy( cached );
+            }
+        }
+
+        Object value = syncCache.get( key );
+        if ( value == null || refresh( key, value ) )
+        {
+            metrics.miss();
+            return null;
+        }
+        return decode( key, value );
+    }
+
+    /**
+     * Returns the cached instances identified by the given identifiers, retrieved from memcache
+     * by single batch call. The result lists the identifiers not found in cache, the only ones
+     * to be retrieved remotely.
+     *
+     * @param identifiers the resource identifiers
+     * @return the batch result, found instances in order of the identifiers
+     */
+    public CacheBatch<T> getAll( @Nonnull Collection<Identifier> identifiers )
+    {
+        checkNotNull( identifiers, "Identifiers can't be null" );
+
+        Map<Identifier, T> found = new LinkedHashMap<>();
+        Map<String, Identifier> remaining = new LinkedHashMap<>();
+
+        for ( Identifier identifier : identifiers )
+        {
+            String key = fullKey( identifier );
+            T cached = nearCache == null ? null : nearCache.get( key );
+            if ( cached != null )
+            {
+                metrics.nearHit();
+                found.put( identifier, copy( cached ) );
+            }
+            else
+            {
+                remaining.put( key, identifier );
+            }
+        }
+
+        Map<String, Object> cached = remaining.isEmpty()
+                ? Collections.emptyMap()
+                : syncCache.getAll( remaining.keySet() );
+
+        List<Identifier> missing = new ArrayList<>();
+        for ( Map.Entry<String, Identifier> entry : remaining.entrySet() )
+        {
+            Object value = cached.get( entry.getKey() );
+            T instance = null;
+            if ( value == null || refresh( entry.getKey(), value ) )
+            {
+                metrics.miss();
+            }
+            else
+            {
+                instance = decode( entry.getKey(), value );
+            }
+
+            if ( instance == null )
+            {
+                missing.add( entry.getValue() );
+            }
+            else
+            {
+                found.put( entry.getValue(), instance );
+            }
+        }
+
+        return new CacheBatch<>( found, missing );
+    }
+
+    /**
+     * Returns the lazily materialized view of the cached instance. The cached JSON document is not bound
+     * unless the caller asks for the whole instance, see {@link CachedView}. The view is bound right away
+     * only if the instance is near cached or the value format is not JSON.
+     *
+     * @param identifier the resource identifier
+     * @return the view, or {@code null} if not cached
+     */
+    public CachedView<T> getView( @Nonnull Identifier identifier )
+    {
+        String key = fullKey( identifier );
+        if ( nearCache != null )
+        {
+            T cached = nearCache.get( key );
+            if ( cached != null )
+            {
+                metrics.nearHit();
+                return newView( null, copy( cached ) );
+            }
+        }
+
+        Object value = syncCache.get( key );
+        if ( value == null || refresh( key, value ) )
+        {
+            metrics.miss();
+            return null;
+        }
+
+        byte[] json;
+        try
+        {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            json = values.json( value );
+            if ( json != null )
+            {
+                metrics.hit( stopwatch.elapsed( TimeUnit.MICROSECONDS ) );
+                return newView( json, null );
+            }
+        }
+        catch ( IOException e )
         {
+            metrics.parseFailure();
+            LOGGER.error( "Reading of a cached value for '" + key + "' has failed", e );
             return null;
         }
 
+        T instance = decode( key, value );
+        return instance == null ? null : newView( null, instance );
+    }
+
+    /**
+     * Creates the view of the cached instance, override to provide the view with typed accessors.
+     *
+     * @param json     the UTF-8 encoded JSON document, or {@code null} if already bound
+     * @param instance the already bound instance, or {@code null}
+     * @return the new view
+     */
+    protected CachedView<T> newView( @Nullable byte[] json, @Nullable T instance )
+    {
+        return new CachedView<>( type(), json, instance );
+    }
+
+    /**
+     * Checks whether the soft expired (or chosen for early refresh) value is going to be refreshed
+     * by the current caller, that is the caller has acquired the refresh lease.
+     *
+     * @return true if the value should be served as a cache miss
+     */
+    private boolean refresh( String key, Object value )
+    {
+        if ( softExpiry == null )
+        {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+        SoftExpiry.State state = softExpiry.check( CacheValues.softExpiresAt( value ), now, random );
+        if ( state == SoftExpiry.State.FRESH )
+        {
+            return false;
+        }
+
+        boolean leased = syncCache.put( key + "::lease",
+                now,
+                Expiration.byDeltaSeconds( LEASE_SECONDS ),
+                MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT );
+
+        if ( leased )
+        {
+            refreshing.put( key, Boolean.TRUE );
+            metrics.refresh( state == SoftExpiry.State.EARLY );
+            LOGGER.info( "Refresh lease acquired for '" + key + "' (" + state + ")" );
+        }
+        else
+        {
+            metrics.leaseContended();
+        }
+        return leased;
+    }
+
+    private long softExpiresAt( @Nullable Long lastFor )
+    {
+        return softExpiry == null ? 0 : softExpiry.expiresAt( System.currentTimeMillis(), lastFor );
+    }
+
+    /**
+     * Returns the memcache expiration time of the value being cached now.
+     */
+    private long expiresAt( @Nullable Long lastFor )
+    {
+        return System.currentTimeMillis() + ( lastFor == null ? expirationSeconds * 1000L : lastFor );
+    }
+
+    private T decode( String key, Object value )
+    {
         try
         {
-            return JacksonFactory.getDefaultInstance().fromString( json, type() );
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            T instance = values.decode( value, type() );
+            if ( instance == null )
+            {
+                metrics.miss();
+                return null;
+            }
+
+            metrics.hit( stopwatch.elapsed( TimeUnit.MICROSECONDS ) );
+
+            // near cached only for the remaining lifetime of the memcache value, unknown for the JSON string
+            long expiresAt = CacheValues.expiresAt( value );
+            if ( nearCache != null && expiresAt > 0 )
+            {
+                nearCache.put( key, copy( instance ), expiresAt - System.currentTimeMillis() );
+            }
+            return instance;
         }
         catch ( IOException e )
         {
-            LOGGER.error( "Parsing of a JSON string for '" + key + "' has failed", e );
-            LOGGER.error( json );
+            metrics.parseFailure();
+            LOGGER.error( "Parsing of a cached value for '" + key + "' has failed", e );
+            if ( value instanceof String )
+            {
+                LOGGER.error( ( String ) value );
+            }
             return null;
         }
     }
@@ -99,35 +426,356 @@ public abstract class AbstractLocalResourceProvider<T>
 
         try
         {
-            Expiration expiration;
+            Object value = values.encode( instance, softExpiresAt( lastFor ), fetchedVersion(), expiresAt( lastFor ) );
+            metrics.serialized( started.elapsed( TimeUnit.MICROSECONDS ), CacheValues.length( value ) );
 
-            if ( lastFor == null )
+            Set<String> written = write( Collections.singletonMap( key, value ), expiration( lastFor ) );
+            if ( nearCache != null && written.contains( key ) )
             {
-                expiration = Expiration.byDeltaSeconds( 3600 );
+                nearCache.put( key, copy( instance ), lastFor );
             }
-            else
+            LOGGER.debug( type().getSimpleName() + " serialization and caching" + ( asyncCache == null ? "" : " (async)" )
+                    + " took: " + started.stop() + ", " + CacheValues.length( value ) + " bytes" );
+        }
+        catch ( Exception e )
+        {
+            LOGGER.error( "Cache put has failed for key '" + key + "'. ", e );
+        }
+    }
+
+    /**
+     * Caches all of the given instances by single memcache batch call.
+     *
+     * @param instances the instances to be cached keyed by its identifier
+     * @param lastFor   the expiration in milliseconds, or {@code null} for the default expiration
+     */
+    public void persistAll( @Nonnull Map<Identifier, T> instances, @Nullable Long lastFor )
+    {
+        checkNotNull( instances, "Instances can't be null" );
+        if ( instances.isEmpty() )
+        {
+            return;
+        }
+
+        Stopwatch started = Stopwatch.createStarted();
+        Map<String, Object> batch = new HashMap<>();
+        Map<String, T> serialized = new HashMap<>();
+        long softExpiresAt = softExpiresAt( lastFor );
+        long version = fetchedVersion();
+        long expiresAt = expiresAt( lastFor );
+        long bytes = 0;
+
+        for ( Map.Entry<Identifier, T> entry : instances.entrySet() )
+        {
+            String key = fullKey( entry.getKey() );
+            T instance = checkNotNull( entry.getValue(), "Instance can't be null" );
+            try
+            {
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                Object value = values.encode( instance, softExpiresAt, version, expiresAt );
+                metrics.serialized( stopwatch.elapsed( TimeUnit.MICROSECONDS ), CacheValues.length( value ) );
+
+                batch.put( key, value );
+                serialized.put( key, instance );
+                bytes += CacheValues.length( value );
+            }
+            catch ( Exception e )
             {
-                expiration = Expiration.byDeltaMillis( lastFor.intValue() );
+                LOGGER.error( "Serialization has failed for key '" + key + "'. ", e );
             }
+        }
 
-            String json = JacksonFactory.getDefaultInstance().toString( instance );
-            syncCache.put( key, json, expiration );
-            LOGGER.info( "Account JSON serialization and caching took: " + started.stop() );
+        Set<String> written = write( batch, expiration( lastFor ) );
+        if ( nearCache != null )
+        {
+            for ( Map.Entry<String, T> entry : serialized.entrySet() )
+            {
+                if ( written.contains( entry.getKey() ) )
+                {
+                    nearCache.put( entry.getKey(), copy( entry.getValue() ), lastFor );
+                }
+            }
         }
-        catch ( Exception e )
+        LOGGER.debug( batch.size() + " " + type().getSimpleName() + "(s) serialization and caching"
+                + ( asyncCache == null ? "" : " (async)" ) + " took: " + started.stop() + ", " + bytes + " bytes" );
+    }
+
+    /**
+     * Caches the JSON document of the resource under all of the given identifiers, without binding
+     * the document if the value format allows it. The cached value is replaced only if older than the given version.
+     * The JSON string format carries no version, the cached value is evicted instead and can't be re-added
+     * by the concurrent persist for {@link #LEASE_SECONDS}. The near cache entries of the current instance are evicted.
+     *
+     * @param json        the UTF-8 encoded JSON document of the resource
+     * @param identifiers the identifiers the resource is being retrieved by
+     * @param version     the time in epoch milliseconds the document has been up to date at, zero if unknown
+     * @param lastFor     the expiration in milliseconds, or {@code null} for the default expiration
+     */
+    protected void persistJson( @Nonnull byte[] json,
+                                @Nonnull Collection<Identifier> identifiers,
+                                long version,
+                                @Nullable Long lastFor )
+    {
+        checkNotNull( json, "JSON can't be null" );
+        checkNotNull( identifiers, "Identifiers can't be null" );
+
+        List<String> keys = new ArrayList<>();
+        for ( Identifier identifier : identifiers )
         {
-            LOGGER.error( "Cache put has failed for key '" + key + "'. ", e );
+            String key = fullKey( identifier );
+            if ( nearCache != null )
+            {
+                nearCache.invalidate( key );
+            }
+            if ( coalescer != null )
+            {
+                coalescer.forget( key );
+            }
+            keys.add( key );
+        }
+
+        if ( !values.isBinary() || version <= 0 )
+        {
+            syncCache.deleteAll( keys, LEASE_SECONDS * 1000L );
+            return;
+        }
+
+        Object value;
+        try
+        {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            value = values.encodeJson( json, type(), softExpiresAt( lastFor ), version, expiresAt( lastFor ) );
+            metrics.serialized( stopwatch.elapsed( TimeUnit.MICROSECONDS ), CacheValues.length( value ) );
+        }
+        catch ( IOException e )
+        {
+            LOGGER.error( "Serialization of the " + type().getSimpleName() + " JSON has failed", e );
+            syncCache.deleteAll( keys, LEASE_SECONDS * 1000L );
+            return;
+        }
+
+        Map<String, Object> batch = new HashMap<>();
+        for ( String key : keys )
+        {
+            batch.put( key, value );
+        }
+        writeOrdered( batch, expiration( lastFor ) );
+    }
+
+    /**
+     * The version of the instance persisted once retrieved by the remote call, the call has started
+     * not earlier than {@link #LEASE_SECONDS} ago.
+     */
+    private long fetchedVersion()
+    {
+        return System.currentTimeMillis() - LEASE_SECONDS * 1000L;
+    }
+
+    /**
+     * Writes the values to memcache, either synchronously in order or asynchronously without waiting
+     * for the result. Asynchronously only missing values are added, the values being refreshed
+     * by this instance are always written synchronously.
+     *
+     * @return the keys known to be written
+     */
+    private Set<String> write( Map<String, Object> batch, Expiration expiration )
+    {
+        if ( asyncCache == null )
+        {
+            return writeOrdered( batch, expiration );
+        }
+
+        Map<String, Object> refreshed = new HashMap<>();
+        Map<String, Object> added = new HashMap<>();
+        for ( Map.Entry<String, Object> entry : batch.entrySet() )
+        {
+            if ( refreshing.asMap().remove( entry.getKey() ) != null )
+            {
+                refreshed.put( entry.getKey(), entry.getValue() );
+            }
+            else if ( coalescer == null || coalescer.shouldWrite( entry.getKey(), entry.getValue() ) )
+            {
+                added.put( entry.getKey(), entry.getValue() );
+            }
+        }
+        if ( !added.isEmpty() )
+        {
+            asyncCache.putAll( added, expiration, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT );
+        }
+        return refreshed.isEmpty() ? Collections.emptySet() : writeOrdered( refreshed, expiration );
+    }
+
+    /**
+     * Writes the values to memcache, the cached value is replaced only if its version is lower
+     * than the version of the value being written (see {@link CacheValues#version(Object)}).
+     * The JSON string carries no version, thus never replaces the cached value.
+     *
+     * @return the written keys
+     */
+    private Set<String> writeOrdered( Map<String, Object> batch, Expiration expiration )
+    {
+        Set<String> written = new HashSet<>();
+        Map<String, Object> pending = new HashMap<>( batch );
+
+        for ( int attempt = 0; attempt < CAS_ATTEMPTS && !pending.isEmpty(); attempt++ )
+        {
+            Set<String> added = syncCache.putAll( pending, expiration, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT );
+            written.addAll( added );
+            pending.keySet().removeAll( added );
+            if ( pending.isEmpty() )
+            {
+                break;
+            }
+
+            Map<String, IdentifiableValue> current = syncCache.getIdentifiables( pending.keySet() );
+            Map<String, CasValues> replace = new HashMap<>();
+            Iterator<Map.Entry<String, Object>> iterator = pending.entrySet().iterator();
+
+            while ( iterator.hasNext() )
+            {
+                Map.Entry<String, Object> entry = iterator.next();
+                IdentifiableValue existing = current.get( entry.getKey() );
+                if ( existing == null )
+                {
+                    // evicted meanwhile (or re-add is blocked), the next attempt adds it
+                    continue;
+                }
+                if ( CacheValues.version( existing.getValue() ) >= CacheValues.version( entry.getValue() ) )
+                {
+                    metrics.outdatedWrite();
+                    iterator.remove();
+                }
+                else
+                {
+                    replace.put( entry.getKey(), new CasValues( existing, entry.getValue(), expiration ) );
+                }
+            }
+
+            if ( !replace.isEmpty() )
+            {
+                Set<String> replaced = syncCache.putIfUntouched( replace );
+                written.addAll( replaced );
+                pending.keySet().removeAll( replaced );
+            }
+        }
+        return written;
+    }
+
+    private Expiration expiration( @Nullable Long lastFor )
+    {
+        if ( lastFor == null )
+        {
+            return Expiration.byDeltaSeconds( expirationSeconds );
+        }
+        return Expiration.byDeltaMillis( lastFor.intValue() );
+    }
+
+    /**
+     * Evicts the cached instance identified by the given identifier from the memcache
+     * and from the near cache of the current instance.
+     *
+     * @param identifier the resource identifier
+     */
+    public void invalidate( @Nonnull Identifier identifier )
+    {
+        String key = fullKey( checkNotNull( identifier, "Identifier can't be null" ) );
+        if ( nearCache != null )
+        {
+            nearCache.invalidate( key );
+        }
+        if ( coalescer != null )
+        {
+            coalescer.forget( key );
+        }
+        syncCache.delete( key );
+    }
+
+    /**
+     * Invalidates all of the cached instances of the {@link #type()} at once by bumping its generation,
+     * without touching other types. Other instances notice the new generation within
+     * {@link CacheGeneration#REFRESH_SECONDS}.
+     */
+    public void invalidateAll()
+    {
+        long bumped = generation.bump();
+        invalidateNearCache();
+        LOGGER.info( type().getSimpleName() + " cache generation bumped to " + bumped );
+    }
+
+    /**
+     * Evicts all of the instances from the near cache of the current instance, memcache is untouched.
+     */
+    public void invalidateNearCache()
+    {
+        if ( nearCache != null )
+        {
+            nearCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the runtime statistics of this provider.
+     *
+     * @return the cache metrics
+     */
+    public CacheMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Returns the number of the instances kept by the near cache of this instance.
+     *
+     * @return the near cache size, zero if turned off
+     */
+    public long nearCacheSize()
+    {
+        return nearCache == null ? 0 : nearCache.size();
+    }
+
+    /**
+     * Returns the number of the asynchronous writes skipped as repeated within the coalescing window.
+     *
+     * @return the coalesced write count
+     */
+    public long coalescedWriteCount()
+    {
+        return coalescer == null ? 0 : coalescer.coalescedCount();
+    }
+
+    /**
+     * Returns the copy of the instance, the near cached one is shared and must not leak to the caller
+     * to be modified. {@link GenericJson} is cloned, any other type is expected to be immutable,
+     * override for other behavior.
+     *
+     * @param instance the instance to be copied
+     * @return the copy of the instance
+     */
+    @SuppressWarnings( "unchecked" )
+    protected T copy( @Nonnull T instance )
+    {
+        if ( instance instanceof GenericJson )
+        {
+            return ( T ) ( ( GenericJson ) instance ).clone();
         }
+        return instance;
     }
 
+    /**
+     * Returns the memcache key of the instance, {@code API_NAME::Type::generation::identifier}.
+     *
+     * @param identifier the resource identifier
+     * @return the memcache key
+     */
     protected String fullKey( @Nonnull Identifier identifier )
     {
         Class<T> type = type();
-        return API_NAME + "::" + type.getSimpleName() + "::" + identifier.key();
+        return API_NAME + "::" + type.getSimpleName() + "::" + generation.current() + "::" + identifier.key();
     }
 
     /**
-     * Returns the type of the resource to be cached.
+     * Returns the type of the resource to be cached. Called already by the constructor,
+     * thus must not depend on the state of the subclass.
      *
      * @return type of the resource
      */
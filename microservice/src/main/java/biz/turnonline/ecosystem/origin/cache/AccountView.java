@@ -0,0 +1,77 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import biz.turnonline.ecosystem.steward.model.Account;
+import biz.turnonline.ecosystem.steward.model.AccountBusiness;
+
+import javax.annotation.Nullable;
+
+/**
+ * The lazily materialized view of the cached remote {@link Account}. The top level properties
+ * are read without binding the account, {@link #getBusiness()} binds the account as a whole.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountView
+        extends CachedView<Account>
+{
+    AccountView( @Nullable byte[] json, @Nullable Account instance )
+    {
+        super( Account.class, json, instance );
+    }
+
+    /**
+     * The account unique identification.
+     */
+    public Long getId()
+    {
+        return getLong( "id" );
+    }
+
+    /**
+     * The login email address of the account.
+     */
+    public String getEmail()
+    {
+        return getString( "email" );
+    }
+
+    /**
+     * The identity ID of the account.
+     */
+    public String getIdentityId()
+    {
+        return getString( "identityId" );
+    }
+
+    /**
+     * The preferred account language, ISO 639 alpha-2 or alpha-3 language code.
+     */
+    public String getLocale()
+    {
+        return getString( "locale" );
+    }
+
+    /**
+     * The time-zone ID, such as Europe/Paris.
+     */
+    public String getZoneId()
+    {
+        return getString( "zoneId" );
+    }
+
+    /**
+     * Whether the account represents a company.
+     */
+    public Boolean getCompany()
+    {
+        return getBoolean( "company" );
+    }
+
+    /**
+     * The account business details, binds the account as a whole.
+     */
+    public AccountBusiness getBusiness()
+    {
+        return get().getBusiness();
+    }
+}
@@ -0,0 +1,62 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.common.base.MoreObjects;
+import org.ctoolkit.restapi.client.Identifier;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The result of the {@link AbstractLocalResourceProvider#getAll(java.util.Collection)},
+ * the cached instances and the identifiers not found in cache.
+ *
+ * @param <T> the type of the cached resource
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public final class CacheBatch<T>
+{
+    private final Map<Identifier, T> found;
+
+    private final List<Identifier> missing;
+
+    CacheBatch( @Nonnull Map<Identifier, T> found, @Nonnull List<Identifier> missing )
+    {
+        this.found = Collections.unmodifiableMap( found );
+        this.missing = Collections.unmodifiableList( missing );
+    }
+
+    /**
+     * Returns the cached instances keyed by its identifier.
+     */
+    public Map<Identifier, T> getFound()
+    {
+        return found;
+    }
+
+    /**
+     * Returns the identifiers not found in cache (or not readable), to be retrieved remotely.
+     */
+    public List<Identifier> getMissing()
+    {
+        return missing;
+    }
+
+    /**
+     * Returns true if all of the requested instances have been found in cache.
+     */
+    public boolean isComplete()
+    {
+        return missing.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+                .add( "found", found.size() )
+                .add( "missing", missing )
+                .toString();
+    }
+}
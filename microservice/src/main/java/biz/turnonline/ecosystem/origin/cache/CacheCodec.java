@@ -0,0 +1,42 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The serialization format of the cached instance stored in memcache as binary value.
+ * The value is prefixed by the header identifying the {@link #format()} the value has been written by,
+ * thus the format might roll over while the values written by the previous one are still readable.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ * @see CacheValues
+ */
+public interface CacheCodec
+{
+    /**
+     * The unique, never reused identification of the serialization format written to the value header.
+     *
+     * @return the format identification, a positive number
+     */
+    byte format();
+
+    /**
+     * Serializes the instance.
+     *
+     * @param instance the instance to be serialized
+     * @return the serialized instance
+     * @throws IOException if serialization fails
+     */
+    byte[] write( @Nonnull Object instance ) throws IOException;
+
+    /**
+     * Deserializes the instance.
+     *
+     * @param input the serialized instance (already decompressed)
+     * @param type  the type of the instance
+     * @return the instance
+     * @throws IOException if deserialization fails
+     */
+    <T> T read( @Nonnull InputStream input, @Nonnull Class<T> type ) throws IOException;
+}
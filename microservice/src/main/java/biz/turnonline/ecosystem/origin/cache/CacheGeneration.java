@@ -0,0 +1,86 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The generation number of the cached resource type, the part of each memcache key of that type.
+ * Bumping the generation makes all of the values of the type unreachable at once, old values simply expire.
+ * <p>
+ * The generation is stored in memcache and held in-process for {@link #REFRESH_SECONDS}, thus other instances
+ * notice the bump within that interval. If missing in memcache (never set or evicted) the generation is
+ * initialized by the current time, so it never falls back to a generation used before.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class CacheGeneration
+{
+    static final int REFRESH_SECONDS = 10;
+
+    private final MemcacheService syncCache;
+
+    private final String key;
+
+    private volatile Supplier<Long> current;
+
+    /**
+     * @param syncCache the memcache service
+     * @param key       the memcache key of the generation number
+     */
+    CacheGeneration( @Nonnull MemcacheService syncCache, @Nonnull String key )
+    {
+        this.syncCache = checkNotNull( syncCache, "Memcache service can't be null" );
+        this.key = checkNotNull( key, "Key can't be null" );
+        this.current = memoize();
+    }
+
+    private Supplier<Long> memoize()
+    {
+        return Suppliers.memoizeWithExpiration( this::load, REFRESH_SECONDS, TimeUnit.SECONDS );
+    }
+
+    private Long load()
+    {
+        Object generation = syncCache.get( key );
+        if ( generation instanceof Long )
+        {
+            return ( Long ) generation;
+        }
+
+        syncCache.put( key,
+                System.currentTimeMillis(),
+                null,
+                MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT );
+
+        generation = syncCache.get( key );
+        return generation instanceof Long ? ( Long ) generation : System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the current generation number.
+     *
+     * @return the generation number
+     */
+    long current()
+    {
+        return current.get();
+    }
+
+    /**
+     * Bumps the generation number, effective right away for this instance.
+     *
+     * @return the new generation number
+     */
+    long bump()
+    {
+        Long bumped = syncCache.increment( key, 1L, System.currentTimeMillis() );
+        current = memoize();
+        return bumped == null ? current() : bumped;
+    }
+}
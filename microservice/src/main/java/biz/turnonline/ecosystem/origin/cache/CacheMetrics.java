@@ -0,0 +1,125 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import biz.turnonline.ecosystem.origin.stats.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The runtime statistics of the single {@link AbstractLocalResourceProvider} of this instance:
+ * near cache and memcache hits, misses, parse failures, (de)serialization time in microseconds,
+ * payload size in bytes, memcache errors swallowed by the error handler, soft expiry refreshes
+ * and writes skipped as older than the cached value.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public final class CacheMetrics
+{
+    private final LongAdder nearHits = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder parseFailures = new LongAdder();
+
+    private final LongAdder memcacheErrors = new LongAdder();
+
+    private final Histogram serialization = new Histogram();
+
+    private final Histogram deserialization = new Histogram();
+
+    private final Histogram payload = new Histogram();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder earlyRefreshes = new LongAdder();
+
+    private final LongAdder leaseContended = new LongAdder();
+
+    private final LongAdder outdatedWrites = new LongAdder();
+
+    void nearHit()
+    {
+        nearHits.increment();
+    }
+
+    void hit( long micros )
+    {
+        hits.increment();
+        deserialization.record( micros );
+    }
+
+    void miss()
+    {
+        misses.increment();
+    }
+
+    void parseFailure()
+    {
+        parseFailures.increment();
+        misses.increment();
+    }
+
+    void memcacheError()
+    {
+        memcacheErrors.increment();
+    }
+
+    void serialized( long micros, long bytes )
+    {
+        serialization.record( micros );
+        payload.record( bytes );
+    }
+
+    void refresh( boolean early )
+    {
+        if ( early )
+        {
+            earlyRefreshes.increment();
+        }
+        else
+        {
+            refreshes.increment();
+        }
+    }
+
+    void leaseContended()
+    {
+        leaseContended.increment();
+    }
+
+    void outdatedWrite()
+    {
+        outdatedWrites.increment();
+    }
+
+    /**
+     * Returns the current values of the statistics.
+     *
+     * @return the statistics snapshot
+     */
+    public Map<String, Object> snapshot()
+    {
+        long near = nearHits.sum();
+        long memcache = hits.sum();
+        long total = near + memcache + misses.sum();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put( "nearHits", near );
+        snapshot.put( "hits", memcache );
+        snapshot.put( "misses", misses.sum() );
+        snapshot.put( "hitRatio", total == 0 ? 0.0 : ( double ) ( near + memcache ) / total );
+        snapshot.put( "parseFailures", parseFailures.sum() );
+        snapshot.put( "memcacheErrors", memcacheErrors.sum() );
+        snapshot.put( "deserializationMicros", deserialization.snapshot() );
+        snapshot.put( "serializationMicros", serialization.snapshot() );
+        snapshot.put( "payloadBytes", payload.snapshot() );
+        snapshot.put( "refreshes", refreshes.sum() );
+        snapshot.put( "earlyRefreshes", earlyRefreshes.sum() );
+        snapshot.put( "leaseContended", leaseContended.sum() );
+        snapshot.put( "outdatedWrites", outdatedWrites.sum() );
+        return snapshot;
+    }
+}
@@ -0,0 +1,274 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.common.base.MoreObjects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The immutable options of the {@link AbstractLocalResourceProvider}, passed by the concrete provider
+ * via constructor. Each {@code with} method returns a new instance, for example:
+ * <pre>
+ * {@code
+ *     super( CacheOptions.defaults().withNearCache( 1000, 60 ) );
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public final class CacheOptions
+{
+    /**
+     * The default memcache expiration if not specified by the caller.
+     */
+    public static final int DEFAULT_EXPIRATION_SECONDS = 3600;
+
+    /**
+     * The default payload size in bytes above which the binary value will be compressed.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    private static final CacheOptions DEFAULTS = new CacheOptions();
+
+    private int expirationSeconds = DEFAULT_EXPIRATION_SECONDS;
+
+    private long nearCacheSize;
+
+    private int nearCacheSeconds;
+
+    private CacheCodec codec;
+
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    private boolean asyncWrites;
+
+    private long coalescingMillis;
+
+    private int softExpirySeconds;
+
+    private long earlyRefreshMillis;
+
+    private CacheOptions()
+    {
+    }
+
+    private CacheOptions copy()
+    {
+        CacheOptions copy = new CacheOptions();
+        copy.expirationSeconds = expirationSeconds;
+        copy.nearCacheSize = nearCacheSize;
+        copy.nearCacheSeconds = nearCacheSeconds;
+        copy.codec = codec;
+        copy.compressionThreshold = compressionThreshold;
+        copy.asyncWrites = asyncWrites;
+        copy.coalescingMillis = coalescingMillis;
+        copy.softExpirySeconds = softExpirySeconds;
+        copy.earlyRefreshMillis = earlyRefreshMillis;
+        return copy;
+    }
+
+    /**
+     * Returns the default options, memcache only.
+     *
+     * @return the default options
+     */
+    public static CacheOptions defaults()
+    {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns the options with the memcache expiration used if not specified by the caller
+     * ({@link #DEFAULT_EXPIRATION_SECONDS} by default).
+     *
+     * @param seconds the memcache expiration in seconds
+     * @return the new options
+     */
+    public CacheOptions withExpiration( int seconds )
+    {
+        checkArgument( seconds > 0, "Expiration seconds must be positive" );
+
+        CacheOptions copy = copy();
+        copy.expirationSeconds = seconds;
+        return copy;
+    }
+
+    /**
+     * Returns the options with an in-process near cache of already deserialized instances
+     * in front of the memcache. The time to live is capped by the memcache expiration.
+     * Zero size or zero seconds turns the near cache off.
+     *
+     * @param size    the maximum number of the instances kept in-process
+     * @param seconds the time to live of the near cache entry in seconds
+     * @return the new options
+     */
+    public CacheOptions withNearCache( long size, int seconds )
+    {
+        checkArgument( size >= 0, "Near cache size can't be negative" );
+        checkArgument( seconds >= 0, "Near cache seconds can't be negative" );
+        CacheOptions copy = copy();
+        copy.nearCacheSize = size;
+        copy.nearCacheSeconds = seconds;
+        return copy;
+    }
+
+    /**
+     * Returns the options to write memcache values in the binary format of the given codec,
+     * compressed if the payload exceeds the given threshold. Values written as JSON string
+     * (the default) remain readable, see {@link CacheValues}.
+     *
+     * @param codec                the codec to write values with
+     * @param compressionThreshold the payload size in bytes above which it will be compressed
+     * @return the new options
+     */
+    public CacheOptions withCodec( @Nonnull CacheCodec codec, int compressionThreshold )
+    {
+        checkNotNull( codec, "Codec can't be null" );
+        checkArgument( compressionThreshold >= 0, "Compression threshold can't be negative" );
+        CacheOptions copy = copy();
+        copy.codec = codec;
+        copy.compressionThreshold = compressionThreshold;
+        return copy;
+    }
+
+    /**
+     * Returns the options to write memcache values asynchronously, the caller does not wait for the put.
+     * Repeated write of the same value of the same key within the coalescing window is skipped.
+     * Zero window turns the coalescing off.
+     *
+     * @param coalescingMillis the coalescing window in milliseconds
+     * @return the new options
+     */
+    public CacheOptions withAsyncWrites( long coalescingMillis )
+    {
+        checkArgument( coalescingMillis >= 0, "Coalescing window can't be negative" );
+        CacheOptions copy = copy();
+        copy.asyncWrites = true;
+        copy.coalescingMillis = coalescingMillis;
+        return copy;
+    }
+
+    /**
+     * Returns the options with the soft expiration of the memcache values. Once expired, a single caller
+     * (holding the memcache lease) gets a cache miss in order to refresh the value, while others keep getting
+     * the stale value until the hard expiration. The value might be refreshed early with the probability
+     * raising as the soft expiration approaches, see {@link SoftExpiry}.
+     * <p>
+     * The soft expiration time is carried by the binary value header, thus requires the codec,
+     * see {@link #withCodec(CacheCodec, int)}.
+     *
+     * @param seconds            the soft time to live in seconds, zero turns it off
+     * @param earlyRefreshMillis the typical refresh duration in milliseconds, zero turns early refresh off
+     * @return the new options
+     */
+    public CacheOptions withSoftExpiry( int seconds, long earlyRefreshMillis )
+    {
+        checkArgument( seconds >= 0, "Soft expiry seconds can't be negative" );
+        checkArgument( earlyRefreshMillis >= 0, "Early refresh millis can't be negative" );
+
+        CacheOptions copy = copy();
+        copy.softExpirySeconds = seconds;
+        copy.earlyRefreshMillis = earlyRefreshMillis;
+        return copy;
+    }
+
+    /**
+     * Returns the maximum number of the instances kept by the near cache.
+     */
+    public long getNearCacheSize()
+    {
+        return nearCacheSize;
+    }
+
+    /**
+     * Returns the memcache expiration in seconds used if not specified by the caller.
+     */
+    public int getExpirationSeconds()
+    {
+        return expirationSeconds;
+    }
+
+    /**
+     * Returns the time to live of the near cache entry in seconds, never longer than the memcache expiration.
+     */
+    public int getNearCacheSeconds()
+    {
+        return Math.min( nearCacheSeconds, expirationSeconds );
+    }
+
+    /**
+     * Returns the codec to write values with, {@code null} to write JSON string.
+     */
+    @Nullable
+    public CacheCodec getCodec()
+    {
+        return codec;
+    }
+
+    /**
+     * Returns the payload size in bytes above which the binary value will be compressed.
+     */
+    public int getCompressionThreshold()
+    {
+        return compressionThreshold;
+    }
+
+    /**
+     * Returns true if memcache values are written asynchronously.
+     */
+    public boolean isAsyncWrites()
+    {
+        return asyncWrites;
+    }
+
+    /**
+     * Returns the coalescing window of the asynchronous writes in milliseconds.
+     */
+    public long getCoalescingMillis()
+    {
+        return coalescingMillis;
+    }
+
+    /**
+     * Returns the soft time to live of the memcache value in seconds, zero if none.
+     */
+    public int getSoftExpirySeconds()
+    {
+        return softExpirySeconds;
+    }
+
+    /**
+     * Returns the typical refresh duration in milliseconds the early refresh is based on.
+     */
+    public long getEarlyRefreshMillis()
+    {
+        return earlyRefreshMillis;
+    }
+
+    /**
+     * Returns true if the near cache has been configured.
+     */
+    public boolean isNearCache()
+    {
+        return nearCacheSize > 0 && nearCacheSeconds > 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper( this )
+                .add( "expirationSeconds", expirationSeconds )
+                .add( "nearCacheSize", nearCacheSize )
+                .add( "nearCacheSeconds", nearCacheSeconds )
+                .add( "codec", codec == null ? "json-string" : codec.getClass().getSimpleName() )
+                .add( "compressionThreshold", compressionThreshold )
+                .add( "asyncWrites", asyncWrites )
+                .add( "coalescingMillis", coalescingMillis )
+                .add( "softExpirySeconds", softExpirySeconds )
+                .add( "earlyRefreshMillis", earlyRefreshMillis )
+                .toString();
+    }
+}
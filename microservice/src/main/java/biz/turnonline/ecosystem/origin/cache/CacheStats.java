@@ -0,0 +1,77 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.cache.EntityMemcacheStats;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cache statistics of this instance per resource type, see {@link CacheMetrics},
+ * along with the Objectify global cache (entity memcache) hits and misses per entity kind.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class CacheStats
+        implements StatsReporter
+{
+    private final RemoteAccountCache accounts;
+
+    @Inject
+    CacheStats( RemoteAccountCache accounts )
+    {
+        this.accounts = accounts;
+    }
+
+    @Override
+    public String name()
+    {
+        return "cache";
+    }
+
+    @Override
+    public Map<String, Object> report()
+    {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put( accounts.type().getSimpleName(), report( accounts ) );
+        report.put( "objectify", objectify() );
+        return report;
+    }
+
+    private static Map<String, Object> report( AbstractLocalResourceProvider<?> provider )
+    {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put( "nearCacheSize", provider.nearCacheSize() );
+        report.put( "coalescedWrites", provider.coalescedWriteCount() );
+        report.putAll( provider.getMetrics().snapshot() );
+        return report;
+    }
+
+    private static Map<String, Object> objectify()
+    {
+        Map<String, Object> report = new LinkedHashMap<>();
+        try
+        {
+            EntityMemcacheStats stats = ObjectifyService.factory().getMemcacheStats();
+            stats.getStats().forEach( ( kind, stat ) -> {
+                long hits = stat.getHits();
+                long misses = stat.getMisses();
+
+                Map<String, Object> values = new LinkedHashMap<>();
+                values.put( "hits", hits );
+                values.put( "misses", misses );
+                values.put( "hitRatio", hits + misses == 0 ? 0.0 : ( double ) hits / ( hits + misses ) );
+                report.put( kind, values );
+            } );
+        }
+        catch ( RuntimeException e )
+        {
+            report.put( "error", e.getMessage() );
+        }
+        return report;
+    }
+}
@@ -0,0 +1,379 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Longs;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Converts the instance to the memcache value and back.
+ * <p>
+ * Without a codec the value is the JSON string, the original format. With a {@link CacheCodec}
+ * the value is a byte array with the header
+ * <ul>
+ * <li>{@link #MAGIC} byte</li>
+ * <li>{@link CacheCodec#format()} byte</li>
+ * <li>flags byte, {@link #GZIP} if the payload is compressed (only above the compression threshold),
+ * {@link #SOFT_EXPIRY} if followed by the soft expiration time, {@link #VERSION} if followed by the version,
+ * {@link #EXPIRY} if followed by the (hard) expiration time</li>
+ * <li>optional 8 bytes of the soft expiration time in epoch milliseconds</li>
+ * <li>optional 8 bytes of the version, the time in epoch milliseconds the value has been up to date at</li>
+ * <li>optional 8 bytes of the memcache expiration time in epoch milliseconds</li>
+ * </ul>
+ * followed by the payload. Both, the JSON string and the binary value of any known format are read
+ * regardless of the format being written, so the format might be switched without flushing the memcache.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class CacheValues
+{
+    static final byte MAGIC = ( byte ) 0xCA;
+
+    static final byte GZIP = 1;
+
+    static final byte SOFT_EXPIRY = 2;
+
+    static final byte VERSION = 4;
+
+    static final byte EXPIRY = 8;
+
+    /**
+     * The flags of the header fields, in order of the fields.
+     */
+    private static final int FIELDS = SOFT_EXPIRY | VERSION | EXPIRY;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private static final int LONG_LENGTH = 8;
+
+    private final CacheCodec codec;
+
+    private final int compressionThreshold;
+
+    private final Map<Byte, CacheCodec> codecs = new HashMap<>();
+
+    /**
+     * @param codec                the codec to write values with, or {@code null} for the JSON string
+     * @param compressionThreshold the payload size in bytes above which it will be compressed
+     */
+    CacheValues( @Nullable CacheCodec codec, int compressionThreshold )
+    {
+        this.codec = codec;
+        this.compressionThreshold = compressionThreshold;
+
+        register( new JsonCacheCodec() );
+        if ( codec != null )
+        {
+            register( codec );
+        }
+    }
+
+    private void register( CacheCodec codec )
+    {
+        checkArgument( codec.format() > 0, "Codec format must be a positive number" );
+        codecs.put( codec.format(), codec );
+    }
+
+    /**
+     * Converts the instance to the memcache value.
+     *
+     * @param instance the instance to be cached
+     * @return the memcache value
+     * @throws IOException if serialization fails
+     */
+    Object encode( @Nonnull Object instance ) throws IOException
+    {
+        return encode( instance, 0, 0, 0 );
+    }
+
+    /**
+     * Converts the instance to the memcache value with the soft expiration time, version and expiration time
+     * in the header. All of them require the binary value, those are ignored for the JSON string.
+     *
+     * @param instance      the instance to be cached
+     * @param softExpiresAt the soft expiration time in epoch milliseconds, zero if none
+     * @param version       the version of the value, zero if unknown
+     * @param expiresAt     the memcache expiration time in epoch milliseconds, zero if unknown
+     * @return the memcache value
+     * @throws IOException if serialization fails
+     */
+    Object encode( @Nonnull Object instance, long softExpiresAt, long version, long expiresAt ) throws IOException
+    {
+        checkNotNull( instance, "Instance can't be null" );
+        if ( codec == null )
+        {
+            return JacksonFactory.getDefaultInstance().toString( instance );
+        }
+
+        return envelope( codec.write( instance ), softExpiresAt, version, expiresAt );
+    }
+
+    /**
+     * Converts the JSON document of the instance to the memcache value. The document is stored as is
+     * (without binding) if written as JSON string or by the {@link JsonCacheCodec}.
+     *
+     * @param json          the UTF-8 encoded JSON document of the instance
+     * @param type          the type of the instance, to bind the document for other codecs
+     * @param softExpiresAt the soft expiration time in epoch milliseconds, zero if none
+     * @param version       the version of the value, zero if unknown
+     * @param expiresAt     the memcache expiration time in epoch milliseconds, zero if unknown
+     * @return the memcache value
+     * @throws IOException if serialization fails
+     */
+    Object encodeJson( @Nonnull byte[] json,
+                       @Nonnull Class<?> type,
+                       long softExpiresAt,
+                       long version,
+                       long expiresAt ) throws IOException
+    {
+        checkNotNull( json, "JSON can't be null" );
+        if ( codec == null )
+        {
+            return new String( json, StandardCharsets.UTF_8 );
+        }
+        if ( codec instanceof JsonCacheCodec )
+        {
+            return envelope( json, softExpiresAt, version, expiresAt );
+        }
+
+        Object instance = JacksonFactory.getDefaultInstance().fromInputStream( new ByteArrayInputStream( json ),
+                StandardCharsets.UTF_8,
+                type );
+        return envelope( codec.write( instance ), softExpiresAt, version, expiresAt );
+    }
+
+    private byte[] envelope( byte[] payload, long softExpiresAt, long version, long expiresAt ) throws IOException
+    {
+        boolean compress = payload.length > compressionThreshold;
+
+        int flags = ( compress ? GZIP : 0 )
+                | ( softExpiresAt > 0 ? SOFT_EXPIRY : 0 )
+                | ( version > 0 ? VERSION : 0 )
+                | ( expiresAt > 0 ? EXPIRY : 0 );
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream( HEADER_LENGTH + 3 * LONG_LENGTH + payload.length );
+        output.write( MAGIC );
+        output.write( codec.format() );
+        output.write( flags );
+
+        if ( softExpiresAt > 0 )
+        {
+            output.write( Longs.toByteArray( softExpiresAt ) );
+        }
+        if ( version > 0 )
+        {
+            output.write( Longs.toByteArray( version ) );
+        }
+        if ( expiresAt > 0 )
+        {
+            output.write( Longs.toByteArray( expiresAt ) );
+        }
+
+        if ( compress )
+        {
+            try ( GZIPOutputStream gzip = new GZIPOutputStream( output ) )
+            {
+                gzip.write( payload );
+            }
+        }
+        else
+        {
+            output.write( payload );
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Converts the memcache value to the instance.
+     *
+     * @param value the memcache value
+     * @param type  the type of the instance
+     * @return the instance
+     * @throws IOException if the value is of unknown format or deserialization fails
+     */
+    <T> T decode( @Nonnull Object value, @Nonnull Class<T> type ) throws IOException
+    {
+        checkNotNull( value, "Value can't be null" );
+        if ( value instanceof String )
+        {
+            return JacksonFactory.getDefaultInstance().fromString( ( String ) value, type );
+        }
+        if ( !( value instanceof byte[] ) )
+        {
+            throw new IOException( "Unsupported value type " + value.getClass().getName() );
+        }
+
+        byte[] bytes = ( byte[] ) value;
+        if ( bytes.length < HEADER_LENGTH || bytes[0] != MAGIC )
+        {
+            throw new IOException( "Unknown value header" );
+        }
+
+        CacheCodec reader = codecs.get( bytes[1] );
+        if ( reader == null )
+        {
+            throw new IOException( "Unsupported value format " + bytes[1] );
+        }
+
+        int offset = offset( bytes );
+        InputStream input = new ByteArrayInputStream( bytes, offset, bytes.length - offset );
+        if ( ( bytes[2] & GZIP ) != 0 )
+        {
+            input = new GZIPInputStream( input );
+        }
+
+        try ( InputStream stream = input )
+        {
+            return reader.read( stream, type );
+        }
+    }
+
+    /**
+     * Returns the UTF-8 encoded JSON document of the memcache value without binding it,
+     * if the value is the JSON string or written by the {@link JsonCacheCodec}.
+     *
+     * @param value the memcache value
+     * @return the JSON document, or {@code null} if the value is of other format
+     * @throws IOException if the value is of unknown format or decompression fails
+     */
+    @Nullable
+    byte[] json( @Nonnull Object value ) throws IOException
+    {
+        checkNotNull( value, "Value can't be null" );
+        if ( value instanceof String )
+        {
+            return ( ( String ) value ).getBytes( StandardCharsets.UTF_8 );
+        }
+        if ( !( value instanceof byte[] ) )
+        {
+            throw new IOException( "Unsupported value type " + value.getClass().getName() );
+        }
+
+        byte[] bytes = ( byte[] ) value;
+        if ( bytes.length < HEADER_LENGTH || bytes[0] != MAGIC )
+        {
+            throw new IOException( "Unknown value header" );
+        }
+        if ( bytes[1] != JsonCacheCodec.FORMAT )
+        {
+            return null;
+        }
+
+        int offset = offset( bytes );
+        if ( ( bytes[2] & GZIP ) == 0 )
+        {
+            return Arrays.copyOfRange( bytes, offset, bytes.length );
+        }
+        try ( InputStream input = new GZIPInputStream( new ByteArrayInputStream( bytes, offset, bytes.length - offset ) ) )
+        {
+            return ByteStreams.toByteArray( input );
+        }
+    }
+
+    /**
+     * Returns true if the values are written in the binary format, able to carry the header.
+     */
+    boolean isBinary()
+    {
+        return codec != null;
+    }
+
+    /**
+     * Returns the soft expiration time of the memcache value.
+     *
+     * @param value the memcache value
+     * @return the soft expiration time in epoch milliseconds, zero if the value has none
+     */
+    static long softExpiresAt( @Nullable Object value )
+    {
+        return headerLong( value, SOFT_EXPIRY );
+    }
+
+    /**
+     * Returns the version of the memcache value.
+     *
+     * @param value the memcache value
+     * @return the version, zero if the value has none (always for the JSON string)
+     */
+    static long version( @Nullable Object value )
+    {
+        return headerLong( value, VERSION );
+    }
+
+    /**
+     * Returns the memcache expiration time of the value.
+     *
+     * @param value the memcache value
+     * @return the expiration time in epoch milliseconds, zero if unknown (always for the JSON string)
+     */
+    static long expiresAt( @Nullable Object value )
+    {
+        return headerLong( value, EXPIRY );
+    }
+
+    private static long headerLong( @Nullable Object value, byte flag )
+    {
+        if ( !( value instanceof byte[] ) )
+        {
+            return 0;
+        }
+
+        byte[] bytes = ( byte[] ) value;
+        if ( bytes.length < HEADER_LENGTH || bytes[0] != MAGIC || ( bytes[2] & flag ) == 0 )
+        {
+            return 0;
+        }
+
+        // the preceding fields
+        int offset = HEADER_LENGTH + LONG_LENGTH * Integer.bitCount( bytes[2] & FIELDS & ( flag - 1 ) );
+        if ( bytes.length < offset + LONG_LENGTH )
+        {
+            return 0;
+        }
+        return Longs.fromByteArray( Arrays.copyOfRange( bytes, offset, offset + LONG_LENGTH ) );
+    }
+
+    private static int offset( byte[] bytes ) throws IOException
+    {
+        int offset = HEADER_LENGTH + LONG_LENGTH * Integer.bitCount( bytes[2] & FIELDS );
+        if ( bytes.length < offset )
+        {
+            throw new IOException( "Truncated value header" );
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the length of the memcache value in bytes, the string length for the JSON string.
+     *
+     * @param value the memcache value
+     * @return the length of the value
+     */
+    static int length( @Nullable Object value )
+    {
+        if ( value instanceof byte[] )
+        {
+            return ( ( byte[] ) value ).length;
+        }
+        if ( value instanceof String )
+        {
+            return ( ( String ) value ).length();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,212 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.jackson2.JacksonFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The lazily materialized view of the cached resource, see {@link AbstractLocalResourceProvider#getView}.
+ * The view keeps the cached JSON document as is. The top level scalar properties are read
+ * by a single streaming pass on first access, skipping nested objects and arrays, while the resource
+ * is bound as a whole only once {@link #get()} is called (typically to access a nested object).
+ * <p>
+ * The view is not thread safe, intended to be used within a single request.
+ *
+ * @param <T> the type of the cached resource
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class CachedView<T>
+{
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final Class<T> type;
+
+    private final byte[] json;
+
+    private T instance;
+
+    private Map<String, Object> scalars;
+
+    /**
+     * @param type     the type of the resource
+     * @param json     the UTF-8 encoded JSON document of the resource, or {@code null} if already bound
+     * @param instance the already bound resource, or {@code null}
+     */
+    protected CachedView( @Nonnull Class<T> type, @Nullable byte[] json, @Nullable T instance )
+    {
+        this.type = checkNotNull( type, "Type can't be null" );
+        checkArgument( json != null || instance != null, "Either JSON or instance is mandatory" );
+        this.json = json;
+        this.instance = instance;
+    }
+
+    /**
+     * Returns the resource bound as a whole, the binding is done once on first call.
+     *
+     * @return the resource
+     * @throws UncheckedIOException if the cached JSON is not parsable
+     */
+    public T get()
+    {
+        if ( instance == null )
+        {
+            try
+            {
+                instance = JacksonFactory.getDefaultInstance().fromInputStream( new ByteArrayInputStream( json ),
+                        StandardCharsets.UTF_8,
+                        type );
+            }
+            catch ( IOException e )
+            {
+                throw new UncheckedIOException( e );
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns true if the resource has been already bound as a whole.
+     */
+    public boolean isBound()
+    {
+        return instance != null;
+    }
+
+    /**
+     * Returns the top level property value as a string, numbers and booleans converted.
+     *
+     * @param name the JSON property name
+     * @return the value, or {@code null} if missing, null or not a scalar
+     */
+    @Nullable
+    public String getString( @Nonnull String name )
+    {
+        Object value = scalar( name );
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Returns the top level property value as a number, the numeric string converted (as of {@code @JsonString}).
+     *
+     * @param name the JSON property name
+     * @return the value, or {@code null} if missing, null or not a number
+     */
+    @Nullable
+    public Long getLong( @Nonnull String name )
+    {
+        Object value = scalar( name );
+        if ( value instanceof Number )
+        {
+            return ( ( Number ) value ).longValue();
+        }
+        if ( value instanceof String )
+        {
+            try
+            {
+                return Long.valueOf( ( String ) value );
+            }
+            catch ( NumberFormatException e )
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the top level property value as a boolean.
+     *
+     * @param name the JSON property name
+     * @return the value, or {@code null} if missing, null or not a boolean
+     */
+    @Nullable
+    public Boolean getBoolean( @Nonnull String name )
+    {
+        Object value = scalar( name );
+        if ( value instanceof Boolean )
+        {
+            return ( Boolean ) value;
+        }
+        if ( value instanceof String )
+        {
+            return Boolean.valueOf( ( String ) value );
+        }
+        return null;
+    }
+
+    private Object scalar( @Nonnull String name )
+    {
+        checkNotNull( name, "Property name can't be null" );
+        if ( instance instanceof GenericJson )
+        {
+            Object value = ( ( GenericJson ) instance ).get( name );
+            return value instanceof String || value instanceof Number || value instanceof Boolean ? value : null;
+        }
+        if ( scalars == null )
+        {
+            scalars = parseScalars();
+        }
+        return scalars.get( name );
+    }
+
+    private Map<String, Object> parseScalars()
+    {
+        Map<String, Object> result = new HashMap<>();
+        try ( JsonParser parser = FACTORY.createParser( json ) )
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                throw new IOException( "JSON object expected" );
+            }
+
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
+            {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch ( token )
+                {
+                    case VALUE_STRING:
+                    {
+                        result.put( name, parser.getText() );
+                        break;
+                    }
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                    {
+                        result.put( name, parser.getNumberValue() );
+                        break;
+                    }
+                    case VALUE_TRUE:
+                    case VALUE_FALSE:
+                    {
+                        result.put( name, parser.getBooleanValue() );
+                        break;
+                    }
+                    default:
+                    {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.appengine.api.memcache.ConsistentErrorHandler;
+import com.google.appengine.api.memcache.ErrorHandler;
+import com.google.appengine.api.memcache.ErrorHandlers;
+import com.google.appengine.api.memcache.InvalidValueException;
+import com.google.appengine.api.memcache.MemcacheServiceException;
+
+import javax.annotation.Nonnull;
+import java.util.logging.Level;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The memcache error handler that counts the errors to {@link CacheMetrics}, while logging and continuing
+ * as {@link ErrorHandlers#getConsistentLogAndContinue(Level)} does.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class CountingErrorHandler
+        implements ConsistentErrorHandler
+{
+    private final ErrorHandler delegate = ErrorHandlers.getConsistentLogAndContinue( Level.INFO );
+
+    private final CacheMetrics metrics;
+
+    CountingErrorHandler( @Nonnull CacheMetrics metrics )
+    {
+        this.metrics = checkNotNull( metrics, "Metrics can't be null" );
+    }
+
+    @Override
+    public void handleDeserializationError( InvalidValueException ivx )
+    {
+        metrics.memcacheError();
+        delegate.handleDeserializationError( ivx );
+    }
+
+    @Override
+    public void handleServiceError( MemcacheServiceException ex )
+    {
+        metrics.memcacheError();
+        delegate.handleServiceError( ex );
+    }
+}
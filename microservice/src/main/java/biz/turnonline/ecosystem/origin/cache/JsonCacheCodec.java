@@ -0,0 +1,41 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The compact (no pretty printing) UTF-8 encoded JSON format of the cached instance,
+ * bound by the <strong>Jackson 2</strong> {@link JacksonFactory}.
+ * <p>
+ * A binary format like Smile or CBOR would save a bit more, however the {@link JacksonFactory}
+ * binds {@link com.google.api.client.json.GenericJson} resources only from JSON text.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public final class JsonCacheCodec
+        implements CacheCodec
+{
+    public static final byte FORMAT = 1;
+
+    @Override
+    public byte format()
+    {
+        return FORMAT;
+    }
+
+    @Override
+    public byte[] write( @Nonnull Object instance ) throws IOException
+    {
+        return JacksonFactory.getDefaultInstance().toByteArray( instance );
+    }
+
+    @Override
+    public <T> T read( @Nonnull InputStream input, @Nonnull Class<T> type ) throws IOException
+    {
+        return JacksonFactory.getDefaultInstance().fromInputStream( input, StandardCharsets.UTF_8, type );
+    }
+}
@@ -0,0 +1,118 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The size bounded in-process cache of already deserialized instances keyed by the memcache key.
+ * Each entry expires at its own deadline, never later than the configured time to live,
+ * so an entry cached for a shorter memcache expiration does not outlive it.
+ *
+ * @param <T> the type of the cached instance
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class NearCache<T>
+{
+    private final Cache<String, Entry<T>> cache;
+
+    private final Ticker ticker;
+
+    private final long ttlNanos;
+
+    NearCache( long maximumSize, int seconds )
+    {
+        this( maximumSize, seconds, Ticker.systemTicker() );
+    }
+
+    NearCache( long maximumSize, int seconds, @Nonnull Ticker ticker )
+    {
+        this.ticker = checkNotNull( ticker, "Ticker can't be null" );
+        this.ttlNanos = TimeUnit.SECONDS.toNanos( seconds );
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize( maximumSize )
+                .expireAfterWrite( seconds, TimeUnit.SECONDS )
+                .ticker( ticker )
+                .build();
+    }
+
+    /**
+     * Returns the cached instance if still valid.
+     *
+     * @param key the memcache key
+     * @return the cached instance or {@code null}
+     */
+    @Nullable
+    T get( @Nonnull String key )
+    {
+        Entry<T> entry = cache.getIfPresent( key );
+        if ( entry == null )
+        {
+            return null;
+        }
+        if ( ticker.read() - entry.expiresAt >= 0 )
+        {
+            cache.invalidate( key );
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Caches the instance for the time to live or for the given expiration, whichever is shorter.
+     *
+     * @param key        the memcache key
+     * @param value      the instance to be cached
+     * @param expiration the memcache expiration in milliseconds, or {@code null} to cache for time to live
+     */
+    void put( @Nonnull String key, @Nonnull T value, @Nullable Long expiration )
+    {
+        long nanos = ttlNanos;
+        if ( expiration != null )
+        {
+            nanos = Math.min( nanos, TimeUnit.MILLISECONDS.toNanos( expiration ) );
+        }
+        if ( nanos > 0 )
+        {
+            cache.put( key, new Entry<>( value, ticker.read() + nanos ) );
+        }
+        else
+        {
+            cache.invalidate( key );
+        }
+    }
+
+    void invalidate( @Nonnull String key )
+    {
+        cache.invalidate( key );
+    }
+
+    void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    long size()
+    {
+        return cache.size();
+    }
+
+    private static class Entry<T>
+    {
+        private final T value;
+
+        private final long expiresAt;
+
+        Entry( T value, long expiresAt )
+        {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
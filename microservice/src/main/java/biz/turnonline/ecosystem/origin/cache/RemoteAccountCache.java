@@ -1,12 +1,39 @@
 package biz.turnonline.ecosystem.origin.cache;
 
 import biz.turnonline.ecosystem.steward.model.Account;
+import com.google.common.base.Strings;
+import org.ctoolkit.restapi.client.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.inject.Singleton;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * The remote {@link Account} provider implementation that keeps cached instance
- * for specified time in memcache.
+ * for specified time in memcache ({@link #EXPIRATION_SECONDS_PROPERTY}). Accounts are kept up to date
+ * by the 'account.changes' subscription, see {@link #put(Long, String, byte[], Instant)}.
+ * Deserialized accounts are kept in-process by the near cache configured by the
+ * {@link #NEAR_CACHE_SIZE_PROPERTY} and {@link #NEAR_CACHE_SECONDS_PROPERTY} system properties,
+ * zero turns it off.
+ * <p>
+ * Callers reading just a few properties might use {@link #getView(Identifier)} instead of
+ * {@link #get(Identifier, java.util.Map, java.util.Locale)}, the account is not bound as a whole on cache hit.
+ * <p>
+ * Accounts are stored in memcache as compact JSON bytes compressed above {@link #COMPRESSION_THRESHOLD_PROPERTY}.
+ * The legacy JSON string format ({@link #FORMAT_PROPERTY} set to {@link #FORMAT_JSON}) is kept only for
+ * the rollback to versions unable to read the binary format. The JSON string carries no header,
+ * thus the soft expiry ({@link #SOFT_EXPIRY_SECONDS_PROPERTY}, {@link #EARLY_REFRESH_MILLIS_PROPERTY})
+ * and the ordered writes are not applied under it, the properties are ignored.
+ * <p>
+ * Set {@link #ASYNC_WRITES_PROPERTY} to {@code true} to put accounts to memcache asynchronously,
+ * the repeated persist of the same account is coalesced within {@link #COALESCING_MILLIS_PROPERTY}.
  *
  * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
  */
@@ -14,6 +41,110 @@ import javax.inject.Singleton;
 public class RemoteAccountCache
         extends AbstractLocalResourceProvider<Account>
 {
+    private static final Logger LOGGER = LoggerFactory.getLogger( RemoteAccountCache.class );
+
+    static final String NEAR_CACHE_SIZE_PROPERTY = "remote.account.near.cache.size";
+
+    static final String NEAR_CACHE_SECONDS_PROPERTY = "remote.account.near.cache.seconds";
+
+    static final String FORMAT_PROPERTY = "remote.account.cache.format";
+
+    static final String COMPRESSION_THRESHOLD_PROPERTY = "remote.account.cache.compression.threshold";
+
+    static final String FORMAT_BINARY = "binary";
+
+    static final String FORMAT_JSON = "json";
+
+    static final String ASYNC_WRITES_PROPERTY = "remote.account.cache.async.writes";
+
+    static final String EXPIRATION_SECONDS_PROPERTY = "remote.account.cache.expiration.seconds";
+
+    static final String COALESCING_MILLIS_PROPERTY = "remote.account.cache.coalescing.millis";
+
+    static final String SOFT_EXPIRY_SECONDS_PROPERTY = "remote.account.cache.soft.expiry.seconds";
+
+    static final String EARLY_REFRESH_MILLIS_PROPERTY = "remote.account.cache.early.refresh.millis";
+
+    public RemoteAccountCache()
+    {
+        super( options() );
+    }
+
+    private static CacheOptions options()
+    {
+        CacheOptions options = CacheOptions.defaults()
+                .withExpiration( Integer.getInteger( EXPIRATION_SECONDS_PROPERTY,
+                        CacheOptions.DEFAULT_EXPIRATION_SECONDS ) )
+                .withNearCache(
+                Long.getLong( NEAR_CACHE_SIZE_PROPERTY, 1000L ),
+                Integer.getInteger( NEAR_CACHE_SECONDS_PROPERTY, 60 ) );
+
+        String format = System.getProperty( FORMAT_PROPERTY, FORMAT_BINARY );
+        if ( FORMAT_JSON.equals( format ) )
+        {
+            if ( Integer.getInteger( SOFT_EXPIRY_SECONDS_PROPERTY, 0 ) > 0 )
+            {
+                LOGGER.warn( "Soft expiry is not supported by the '" + FORMAT_JSON + "' format, ignored" );
+            }
+        }
+        else
+        {
+            options = options.withCodec( new JsonCacheCodec(), Integer.getInteger( COMPRESSION_THRESHOLD_PROPERTY,
+                    CacheOptions.DEFAULT_COMPRESSION_THRESHOLD ) );
+
+            options = options.withSoftExpiry( Integer.getInteger( SOFT_EXPIRY_SECONDS_PROPERTY, 0 ),
+                    Long.getLong( EARLY_REFRESH_MILLIS_PROPERTY, 500L ) );
+        }
+        if ( Boolean.getBoolean( ASYNC_WRITES_PROPERTY ) )
+        {
+            options = options.withAsyncWrites( Long.getLong( COALESCING_MILLIS_PROPERTY, 1000L ) );
+        }
+        return options;
+    }
+
+    /**
+     * Caches the up to date account document (as received via 'account.changes') under the identifiers
+     * the account is being retrieved by rest-facade, the account ID and the identity ID
+     * (see {@code LocalAccount#getAccount}).
+     * <p>
+     * Messages are delivered out of order and processed concurrently, thus the cached account is replaced
+     * only if cached before the publish time. Under the legacy JSON string format (no version carried)
+     * the cached account is evicted instead.
+     *
+     * @param accountId   the account ID
+     * @param identityId  the account identity ID
+     * @param json        the UTF-8 encoded JSON document of the account
+     * @param publishTime the publish time of the message the document has been received by
+     */
+    public void put( @Nonnull Long accountId,
+                     @Nullable String identityId,
+                     @Nonnull byte[] json,
+                     @Nonnull Instant publishTime )
+    {
+        checkNotNull( accountId, "Account ID can't be null" );
+        checkNotNull( publishTime, "Publish time can't be null" );
+
+        List<Identifier> identifiers = new ArrayList<>();
+        identifiers.add( new Identifier( accountId.toString() ) );
+        if ( !Strings.isNullOrEmpty( identityId ) )
+        {
+            identifiers.add( new Identifier( identityId ) );
+        }
+        persistJson( json, identifiers, publishTime.toEpochMilli(), null );
+    }
+
+    @Override
+    public AccountView getView( @Nonnull Identifier identifier )
+    {
+        return ( AccountView ) super.getView( identifier );
+    }
+
+    @Override
+    protected AccountView newView( @Nullable byte[] json, @Nullable Account instance )
+    {
+        return new AccountView( json, instance );
+    }
+
     @Override
     protected Class<Account> type()
     {
@@ -0,0 +1,90 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * The soft expiration policy of the cached value. Once the soft expiration time passed,
+ * the value is due to be refreshed, while still being served until the hard (memcache) expiration.
+ * <p>
+ * In order to spread the refreshes of the hot values, the value might be refreshed early,
+ * with the probability raising exponentially as the soft expiration time approaches:
+ * {@code now - earlyMillis * ln( random ) >= softExpiresAt}.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class SoftExpiry
+{
+    private final long softMillis;
+
+    private final long earlyMillis;
+
+    private final long hardMillis;
+
+    /**
+     * @param softMillis  the soft time to live in milliseconds
+     * @param earlyMillis the typical refresh duration in milliseconds, zero turns early refresh off
+     * @param hardMillis  the memcache expiration in milliseconds used if not specified by the caller
+     */
+    SoftExpiry( long softMillis, long earlyMillis, long hardMillis )
+    {
+        this.softMillis = softMillis;
+        this.earlyMillis = earlyMillis;
+        this.hardMillis = hardMillis;
+    }
+
+    /**
+     * Returns the soft expiration time of the value being cached now, never later than the hard expiration.
+     *
+     * @param now     the current time in epoch milliseconds
+     * @param lastFor the hard expiration in milliseconds, or {@code null} for the default expiration
+     * @return the soft expiration time in epoch milliseconds
+     */
+    long expiresAt( long now, @Nullable Long lastFor )
+    {
+        long hard = lastFor == null ? hardMillis : lastFor;
+        return now + Math.min( softMillis, hard );
+    }
+
+    /**
+     * Checks the state of the cached value.
+     *
+     * @param softExpiresAt the soft expiration time of the value, zero if none
+     * @param now           the current time in epoch milliseconds
+     * @param random        the random number from the interval (0, 1]
+     * @return the state of the value
+     */
+    State check( long softExpiresAt, long now, double random )
+    {
+        if ( softExpiresAt <= 0 )
+        {
+            return State.FRESH;
+        }
+        if ( now >= softExpiresAt )
+        {
+            return State.EXPIRED;
+        }
+        if ( earlyMillis > 0 && now - earlyMillis * Math.log( random ) >= softExpiresAt )
+        {
+            return State.EARLY;
+        }
+        return State.FRESH;
+    }
+
+    enum State
+    {
+        /**
+         * The value is fresh, no refresh needed.
+         */
+        FRESH,
+
+        /**
+         * The value is still fresh, but has been chosen to be refreshed early.
+         */
+        EARLY,
+
+        /**
+         * The soft expiration time has passed, the value is due to be refreshed.
+         */
+        EXPIRED
+    }
+}
@@ -0,0 +1,82 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Remembers the hash of the value recently written per key for the coalescing window,
+ * so the repeated write of the same value (typically within a single request) is skipped.
+ * A different value of the same key is always written.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class WriteCoalescer
+{
+    private static final int MAXIMUM_SIZE = 10000;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Cache<String, Long> written;
+
+    private final LongAdder coalesced = new LongAdder();
+
+    WriteCoalescer( long windowMillis )
+    {
+        written = CacheBuilder.newBuilder()
+                .maximumSize( MAXIMUM_SIZE )
+                .expireAfterWrite( windowMillis, TimeUnit.MILLISECONDS )
+                .build();
+    }
+
+    /**
+     * Checks whether the value has to be written and if so, remembers it as written.
+     *
+     * @param key   the memcache key
+     * @param value the memcache value
+     * @return false if the same value has been written within the window
+     */
+    boolean shouldWrite( @Nonnull String key, @Nonnull Object value )
+    {
+        checkNotNull( key, "Key can't be null" );
+        long hash = hash( checkNotNull( value, "Value can't be null" ) );
+
+        Long previous = written.asMap().put( key, hash );
+        if ( previous != null && previous == hash )
+        {
+            coalesced.increment();
+            return false;
+        }
+        return true;
+    }
+
+    void forget( @Nonnull String key )
+    {
+        written.invalidate( key );
+    }
+
+    /**
+     * Returns the number of the skipped writes.
+     */
+    long coalescedCount()
+    {
+        return coalesced.sum();
+    }
+
+    private static long hash( Object value )
+    {
+        if ( value instanceof byte[] )
+        {
+            return HASH_FUNCTION.hashBytes( ( byte[] ) value ).asLong();
+        }
+        return HASH_FUNCTION.hashString( value.toString(), StandardCharsets.UTF_8 ).asLong();
+    }
+}
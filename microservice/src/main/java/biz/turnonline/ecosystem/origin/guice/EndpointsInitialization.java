@@ -1,6 +1,10 @@
 package biz.turnonline.ecosystem.origin.guice;
 
+import biz.turnonline.ecosystem.origin.account.AccountChangesBatchServlet;
 import biz.turnonline.ecosystem.origin.api.MessageEndpoint;
+import biz.turnonline.ecosystem.origin.pubsub.PullSubscriberServlet;
+import biz.turnonline.ecosystem.origin.pubsub.SubscriptionHandoffServlet;
+import biz.turnonline.ecosystem.origin.stats.StatsServlet;
 import com.google.api.server.spi.ServletInitializationParameters;
 import com.google.api.server.spi.guice.EndpointsModule;
 import com.googlecode.objectify.ObjectifyFilter;
@@ -30,5 +34,11 @@ public class EndpointsInitialization
 
         bind( ObjectifyFilter.class ).in( Singleton.class );
         filter( "/*" ).through( ObjectifyFilter.class );
+
+        serve( "/_ah/warmup" ).with( WarmupServlet.class );
+        serve( StatsServlet.PATH ).with( StatsServlet.class );
+        serve( AccountChangesBatchServlet.PATH ).with( AccountChangesBatchServlet.class );
+        serve( SubscriptionHandoffServlet.PATH ).with( SubscriptionHandoffServlet.class );
+        serve( PullSubscriberServlet.PATH ).with( PullSubscriberServlet.class );
     }
 }
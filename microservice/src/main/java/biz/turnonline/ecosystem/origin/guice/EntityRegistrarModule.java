@@ -1,5 +1,7 @@
 package biz.turnonline.ecosystem.origin.guice;
 
+import biz.turnonline.ecosystem.origin.account.AccountEmailLookup;
+import biz.turnonline.ecosystem.origin.account.AccountIdentityLookup;
 import biz.turnonline.ecosystem.origin.account.LocalAccount;
 import com.google.inject.AbstractModule;
 import com.google.inject.multibindings.Multibinder;
@@ -37,6 +39,8 @@ public class EntityRegistrarModule
         public void register( GuicefiedOfyFactory factory )
         {
             factory.register( LocalAccount.class );
+            factory.register( AccountEmailLookup.class );
+            factory.register( AccountIdentityLookup.class );
         }
     }
 }
@@ -2,13 +2,13 @@ package biz.turnonline.ecosystem.origin.guice;
 
 import biz.turnonline.ecosystem.origin.service.MicroserviceModule;
 import biz.turnonline.ecosystem.origin.service.StorageModule;
-import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.ctoolkit.services.endpoints.EndpointsMonitorConfig;
 import org.ctoolkit.services.guice.AppEngineEnvironmentContextListener;
 
 /**
  * The main entry point to configure guice injection.
+ * The injector creation is being profiled, see {@link StartupProfile}.
  *
  * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
  */
@@ -18,7 +18,7 @@ public class GuiceInjectorListener
     @Override
     protected Injector getDevelopmentInjector()
     {
-        return Guice.createInjector( new MicroserviceModule(),
+        return new StartupProfile().createInjector( new MicroserviceModule(),
                 new StorageModule(),
                 new EndpointsInitialization() );
     }
@@ -26,7 +26,7 @@ public class GuiceInjectorListener
     @Override
     protected Injector getProductionInjector()
     {
-        return Guice.createInjector( new MicroserviceModule(),
+        return new StartupProfile().createInjector( new MicroserviceModule(),
                 new StorageModule(),
                 new EndpointsInitialization(),
                 new EndpointsMonitorConfig() );
@@ -0,0 +1,144 @@
+package biz.turnonline.ecosystem.origin.guice;
+
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+import com.google.common.base.Stopwatch;
+import com.google.inject.Binder;
+import com.google.inject.Binding;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.matcher.AbstractMatcher;
+import com.google.inject.multibindings.Multibinder;
+import com.google.inject.spi.ProvisionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The startup timing report. Measures how long the configuration of each Guice module takes
+ * and how long the provisioning of the instances (including the eager singletons) takes
+ * while the injector is being created. Logged once at boot and exposed to administrators
+ * as {@link StatsReporter}.
+ * <p>
+ * Provisioning time is inclusive, it contains provisioning of the instance dependencies as well.
+ * Guice provision listeners can't be removed once the injector is created, thus only singletons
+ * (provisioned once) are profiled, the per request instances never pass through the listener.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+final class StartupProfile
+        implements StatsReporter
+{
+    static final int SLOWEST_PROVISIONS = 15;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( StartupProfile.class );
+
+    private final Map<String, Long> modules = new LinkedHashMap<>();
+
+    private final Map<String, Long> provisions = new ConcurrentHashMap<>();
+
+    private volatile boolean booting = true;
+
+    private long injectorMillis;
+
+    /**
+     * Creates the injector with profiled modules.
+     *
+     * @param modules the modules to be installed
+     * @return the injector
+     */
+    Injector createInjector( @Nonnull Module... modules )
+    {
+        Module[] timed = new Module[modules.length + 1];
+        for ( int index = 0; index < modules.length; index++ )
+        {
+            timed[index] = timed( modules[index] );
+        }
+        timed[modules.length] = this::configure;
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Injector injector = Guice.createInjector( timed );
+        injectorMillis = stopwatch.elapsed( TimeUnit.MILLISECONDS );
+        booting = false;
+
+        LOGGER.info( "Startup profile: " + report() );
+        return injector;
+    }
+
+    private Module timed( @Nonnull Module module )
+    {
+        String name = module.getClass().getSimpleName();
+        return binder -> {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            binder.install( module );
+            modules.put( name, stopwatch.elapsed( TimeUnit.MILLISECONDS ) );
+        };
+    }
+
+    private void configure( Binder binder )
+    {
+        binder.bindListener( new Singletons(), new ProvisionListener()
+        {
+            @Override
+            public <T> void onProvision( ProvisionInvocation<T> provision )
+            {
+                if ( !booting )
+                {
+                    provision.provision();
+                    return;
+                }
+
+                Stopwatch stopwatch = Stopwatch.createStarted();
+                provision.provision();
+                long took = stopwatch.elapsed( TimeUnit.MILLISECONDS );
+                if ( took > 0 )
+                {
+                    provisions.merge( provision.getBinding().getKey().toString(), took, Long::sum );
+                }
+            }
+        } );
+
+        Multibinder.newSetBinder( binder, StatsReporter.class ).addBinding().toInstance( this );
+    }
+
+    /**
+     * Matches the singleton bindings, both eager and lazy.
+     */
+    static class Singletons
+            extends AbstractMatcher<Binding<?>>
+    {
+        @Override
+        public boolean matches( Binding<?> binding )
+        {
+            return Scopes.isSingleton( binding );
+        }
+    }
+
+    @Override
+    public String name()
+    {
+        return "startup";
+    }
+
+    @Override
+    public Map<String, Object> report()
+    {
+        Map<String, Long> slowest = new LinkedHashMap<>();
+        provisions.entrySet().stream()
+                .sorted( Map.Entry.<String, Long>comparingByValue().reversed() )
+                .limit( SLOWEST_PROVISIONS )
+                .forEach( entry -> slowest.put( entry.getKey(), entry.getValue() ) );
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put( "injectorMillis", injectorMillis );
+        report.put( "moduleConfigurationMillis", modules );
+        report.put( "slowestProvisionMillis", slowest );
+        return report;
+    }
+}
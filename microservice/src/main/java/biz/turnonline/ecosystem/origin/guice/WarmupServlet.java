@@ -0,0 +1,187 @@
+package biz.turnonline.ecosystem.origin.guice;
+
+import biz.turnonline.ecosystem.origin.account.LocalAccount;
+import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
+import biz.turnonline.ecosystem.steward.model.Account;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import ma.glasnost.orika.MapperFacade;
+import ma.glasnost.orika.MapperFactory;
+import org.ctoolkit.restapi.client.PubSub;
+import org.ctoolkit.restapi.client.provider.LocalResourceProvider;
+import org.ctoolkit.restapi.client.provider.TokenProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The App Engine warmup request handler ({@code /_ah/warmup}). Warmup requests must be enabled
+ * in {@code appengine-web.xml} via {@code inbound-services}.
+ * <p>
+ * The handler runs following phases and reports the time each phase took:
+ * <ul>
+ * <li>initialization of the singletons serving the API requests ({@link #HOT_BINDINGS}), the rest
+ * (for example Pub/Sub listeners) is provisioned lazily on first use</li>
+ * <li>preload of the most recently active local accounts to the in-process cache</li>
+ * <li>priming of the Jackson and Orika mappers used by REST Facade and Pub/Sub</li>
+ * </ul>
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class WarmupServlet
+        extends HttpServlet
+{
+    static final int PRELOAD_LIMIT = 200;
+
+    /**
+     * The bindings on the path of the API requests, initialized by the warmup.
+     */
+    static final List<Key<?>> HOT_BINDINGS = ImmutableList.of(
+            Key.get( LocalAccountProvider.class ),
+            Key.get( new TypeLiteral<LocalResourceProvider<Account>>()
+            {
+            } ),
+            Key.get( new TypeLiteral<TokenProvider<LocalAccount>>()
+            {
+            } ) );
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( WarmupServlet.class );
+
+    private static final long serialVersionUID = 5829036140261946531L;
+
+    private final Injector injector;
+
+    private final LocalAccountProvider lap;
+
+    @Inject
+    WarmupServlet( Injector injector, LocalAccountProvider lap )
+    {
+        this.injector = injector;
+        this.lap = lap;
+    }
+
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        Map<String, String> phases = new LinkedHashMap<>();
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        int singletons = initSingletons();
+        phases.put( "Hot singletons (" + singletons + ")", elapsed( stopwatch ) );
+
+        stopwatch = Stopwatch.createStarted();
+        int accounts = preloadAccounts();
+        phases.put( "Local accounts (" + accounts + ")", elapsed( stopwatch ) );
+
+        stopwatch = Stopwatch.createStarted();
+        primeMappers();
+        phases.put( "Mappers", elapsed( stopwatch ) );
+
+        LOGGER.info( "Warmup has finished: " + phases );
+
+        response.setContentType( "text/plain" );
+        response.setCharacterEncoding( "UTF-8" );
+
+        PrintWriter writer = response.getWriter();
+        phases.forEach( ( phase, took ) -> writer.println( phase + ": " + took ) );
+        writer.flush();
+    }
+
+    /**
+     * Forces instantiation of the {@link #HOT_BINDINGS} not instantiated yet, the rest is provisioned on demand.
+     *
+     * @return the number of instantiated bindings
+     */
+    private int initSingletons()
+    {
+        int count = 0;
+        for ( Key<?> key : HOT_BINDINGS )
+        {
+            Binding<?> binding = injector.getExistingBinding( key );
+            if ( binding == null )
+            {
+                continue;
+            }
+
+            try
+            {
+                binding.getProvider().get();
+                count++;
+            }
+            catch ( RuntimeException e )
+            {
+                LOGGER.warn( "Initialization of " + key + " has failed", e );
+            }
+        }
+        return count;
+    }
+
+    private int preloadAccounts()
+    {
+        try
+        {
+            return lap.preload( PRELOAD_LIMIT );
+        }
+        catch ( RuntimeException e )
+        {
+            LOGGER.warn( "Preload of the recently active accounts has failed", e );
+            return 0;
+        }
+    }
+
+    private void primeMappers()
+    {
+        try
+        {
+            Account account = new Account().setId( 1L ).setEmail( "warmup@turnonline.biz" );
+
+            // Google HTTP client JSON, used by REST Facade and resource cache
+            String json = JacksonFactory.getDefaultInstance().toString( account );
+            JacksonFactory.getDefaultInstance().fromString( json, Account.class );
+
+            // Jackson object mappers
+            injector.getInstance( ObjectMapper.class ).writeValueAsString( account );
+            injector.getInstance( Key.get( ObjectMapper.class, PubSub.class ) ).writeValueAsString( account );
+
+            // Orika mapper facade is being built lazily on first use
+            Binding<MapperFactory> factory = injector.getExistingBinding( Key.get( MapperFactory.class ) );
+            if ( factory != null )
+            {
+                factory.getProvider().get().getMapperFacade();
+            }
+
+            Binding<MapperFacade> facade = injector.getExistingBinding( Key.get( MapperFacade.class ) );
+            if ( facade != null )
+            {
+                facade.getProvider().get();
+            }
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            LOGGER.warn( "Mappers priming has failed", e );
+        }
+    }
+
+    private static String elapsed( Stopwatch stopwatch )
+    {
+        return stopwatch.elapsed( TimeUnit.MILLISECONDS ) + " ms";
+    }
+}
@@ -0,0 +1,104 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.inject.Provider;
+import org.ctoolkit.restapi.client.pubsub.PubsubCommand;
+import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The listener decorator that optionally hands off the message to the {@link SubscriptionHandoff}
+ * instead of processing it within the push request. Enabled per subscription by the system property
+ * {@code <subscription name>.delivery} with value {@link #FAST_ACK}.
+ * <p>
+ * The mandatory message attributes are validated before the hand-off, invalid message is acknowledged
+ * and dropped right away.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class FastAckListener
+        implements PubsubMessageListener
+{
+    public static final String FAST_ACK = "fast-ack";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( FastAckListener.class );
+
+    private static final long serialVersionUID = -4381709254420167032L;
+
+    private final String name;
+
+    private final transient PubsubMessageListener delegate;
+
+    private final transient Provider<SubscriptionHandoff> handoff;
+
+    private final String[] mandatory;
+
+    /**
+     * Constructs the listener decorator.
+     *
+     * @param name      the subscription name the listener is registered with
+     * @param delegate  the listener to process the message
+     * @param handoff   the hand-off provider
+     * @param mandatory the mandatory message attributes
+     */
+    public FastAckListener( @Nonnull String name,
+                            @Nonnull PubsubMessageListener delegate,
+                            @Nonnull Provider<SubscriptionHandoff> handoff,
+                            String... mandatory )
+    {
+        this.name = checkNotNull( name, "Subscription name can't be null" );
+        this.delegate = checkNotNull( delegate, "Delegate listener can't be null" );
+        this.handoff = checkNotNull( handoff, "Hand-off provider can't be null" );
+        this.mandatory = mandatory;
+    }
+
+    /**
+     * Returns true if the fast acknowledgement is configured for given subscription.
+     *
+     * @param name the subscription name
+     * @return true if the messages are being handed off
+     */
+    static boolean isFastAck( @Nonnull String name )
+    {
+        return FAST_ACK.equals( System.getProperty( name + ".delivery" ) );
+    }
+
+    @Override
+    public void onMessage( @Nonnull PubsubMessage message, @Nonnull String subscription ) throws Exception
+    {
+        if ( !isFastAck( name ) )
+        {
+            delegate.onMessage( message, subscription );
+            return;
+        }
+
+        PubsubCommand command = new PubsubCommand( message );
+        if ( mandatory.length > 0 && !command.validate( mandatory ) )
+        {
+            LOGGER.error( "Some of the mandatory attributes "
+                    + Arrays.toString( mandatory )
+                    + " are missing, incoming attributes: "
+                    + message.getAttributes() );
+            return;
+        }
+
+        handoff.get().handoff( message, name );
+    }
+
+    /**
+     * Processes the handed off message by the target listener.
+     *
+     * @param message the Pub/Sub message
+     * @throws Exception if processing has failed
+     */
+    void deliver( @Nonnull PubsubMessage message ) throws Exception
+    {
+        delegate.onMessage( message, name );
+    }
+}
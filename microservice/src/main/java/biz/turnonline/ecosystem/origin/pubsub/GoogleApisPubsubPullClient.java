@@ -0,0 +1,103 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.client.extensions.appengine.http.UrlFetchTransport;
+import com.google.api.client.googleapis.extensions.appengine.auth.oauth2.AppIdentityCredential;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.pubsub.Pubsub;
+import com.google.api.services.pubsub.PubsubScopes;
+import com.google.api.services.pubsub.model.AcknowledgeRequest;
+import com.google.api.services.pubsub.model.ModifyAckDeadlineRequest;
+import com.google.api.services.pubsub.model.PullRequest;
+import com.google.api.services.pubsub.model.PullResponse;
+import com.google.api.services.pubsub.model.ReceivedMessage;
+import com.google.appengine.api.utils.SystemProperty;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link PubsubPullClient} implementation backed by the Google APIs Pub/Sub client,
+ * authenticated as the App Engine default service account. The subscription name is resolved
+ * within the current application project.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class GoogleApisPubsubPullClient
+        implements PubsubPullClient
+{
+    private volatile Pubsub pubsub;
+
+    @Override
+    public List<ReceivedMessage> pull( @Nonnull String subscription, int maxMessages ) throws IOException
+    {
+        PullRequest request = new PullRequest()
+                .setReturnImmediately( true )
+                .setMaxMessages( maxMessages );
+
+        PullResponse response = pubsub().projects().subscriptions()
+                .pull( fullName( subscription ), request )
+                .execute();
+
+        List<ReceivedMessage> messages = response.getReceivedMessages();
+        return messages == null ? new ArrayList<>() : messages;
+    }
+
+    @Override
+    public void acknowledge( @Nonnull String subscription, @Nonnull List<String> ackIds ) throws IOException
+    {
+        pubsub().projects().subscriptions()
+                .acknowledge( fullName( subscription ), new AcknowledgeRequest().setAckIds( ackIds ) )
+                .execute();
+    }
+
+    @Override
+    public void release( @Nonnull String subscription, @Nonnull List<String> ackIds ) throws IOException
+    {
+        extend( subscription, ackIds, 0 );
+    }
+
+    @Override
+    public void extend( @Nonnull String subscription, @Nonnull List<String> ackIds, int ackDeadlineSeconds )
+            throws IOException
+    {
+        ModifyAckDeadlineRequest request = new ModifyAckDeadlineRequest()
+                .setAckIds( ackIds )
+                .setAckDeadlineSeconds( ackDeadlineSeconds );
+
+        pubsub().projects().subscriptions()
+                .modifyAckDeadline( fullName( subscription ), request )
+                .execute();
+    }
+
+    private static String fullName( String subscription )
+    {
+        return "projects/" + SystemProperty.applicationId.get() + "/subscriptions/" + subscription;
+    }
+
+    private Pubsub pubsub()
+    {
+        if ( pubsub == null )
+        {
+            synchronized ( this )
+            {
+                if ( pubsub == null )
+                {
+                    AppIdentityCredential credential;
+                    credential = new AppIdentityCredential( Collections.singletonList( PubsubScopes.PUBSUB ) );
+
+                    pubsub = new Pubsub.Builder( UrlFetchTransport.getDefaultInstance(),
+                            JacksonFactory.getDefaultInstance(),
+                            credential )
+                            .setApplicationName( SystemProperty.applicationId.get() )
+                            .build();
+                }
+            }
+        }
+        return pubsub;
+    }
+}
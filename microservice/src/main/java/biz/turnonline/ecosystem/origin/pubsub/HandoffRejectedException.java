@@ -0,0 +1,18 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+/**
+ * Thrown if the message hand-off has been refused due to backpressure.
+ * Not acknowledged message will be redelivered by Pub/Sub later.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class HandoffRejectedException
+        extends RuntimeException
+{
+    private static final long serialVersionUID = -3016437628475049412L;
+
+    public HandoffRejectedException( String message )
+    {
+        super( message );
+    }
+}
@@ -0,0 +1,88 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.inject.Provider;
+import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
+
+import javax.annotation.Nonnull;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The listener decorator that records the message rate, processing time and publish to processed lag
+ * to {@link SubscriptionMetrics} under the subscription name the listener is registered with.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class MeteredListener
+        implements PubsubMessageListener
+{
+    private static final long serialVersionUID = 2280961542276035917L;
+
+    private final String name;
+
+    private final transient PubsubMessageListener delegate;
+
+    private final transient Provider<SubscriptionMetrics> metrics;
+
+    /**
+     * Constructs the listener decorator.
+     *
+     * @param name     the subscription name the listener is registered with
+     * @param delegate the listener to process the message
+     * @param metrics  the metrics provider
+     */
+    public MeteredListener( @Nonnull String name,
+                            @Nonnull PubsubMessageListener delegate,
+                            @Nonnull Provider<SubscriptionMetrics> metrics )
+    {
+        this.name = checkNotNull( name, "Subscription name can't be null" );
+        this.delegate = checkNotNull( delegate, "Delegate listener can't be null" );
+        this.metrics = checkNotNull( metrics, "Metrics provider can't be null" );
+    }
+
+    @Override
+    public void onMessage( @Nonnull PubsubMessage message, @Nonnull String subscription ) throws Exception
+    {
+        SubscriptionMetrics metrics = this.metrics.get();
+        metrics.received( name );
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        boolean success = false;
+        try
+        {
+            delegate.onMessage( message, subscription );
+            success = true;
+        }
+        finally
+        {
+            metrics.processed( name, lag( message ), stopwatch.elapsed( TimeUnit.MILLISECONDS ), success );
+        }
+    }
+
+    /**
+     * Returns the time elapsed since the message has been published or -1 if publish time is unknown.
+     */
+    static long lag( @Nonnull PubsubMessage message )
+    {
+        String publishTime = message.getPublishTime();
+        if ( Strings.isNullOrEmpty( publishTime ) )
+        {
+            return -1;
+        }
+
+        try
+        {
+            return System.currentTimeMillis() - Instant.parse( publishTime ).toEpochMilli();
+        }
+        catch ( DateTimeParseException e )
+        {
+            return -1;
+        }
+    }
+}
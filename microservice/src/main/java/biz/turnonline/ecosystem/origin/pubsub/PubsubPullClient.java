@@ -0,0 +1,55 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.ReceivedMessage;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The minimal Pub/Sub pull API used by {@link PullSubscriber}, abstracted in order
+ * to be replaceable by a local in-memory stand-in.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public interface PubsubPullClient
+{
+    /**
+     * Pulls the messages from the subscription, returns immediately if there are no messages.
+     *
+     * @param subscription the subscription name
+     * @param maxMessages  the maximum number of messages to be returned
+     * @return the received messages, empty if none
+     * @throws IOException if the call has failed
+     */
+    List<ReceivedMessage> pull( @Nonnull String subscription, int maxMessages ) throws IOException;
+
+    /**
+     * Acknowledges the messages, those won't be redelivered.
+     *
+     * @param subscription the subscription name
+     * @param ackIds       the acknowledgement IDs of the received messages
+     * @throws IOException if the call has failed
+     */
+    void acknowledge( @Nonnull String subscription, @Nonnull List<String> ackIds ) throws IOException;
+
+    /**
+     * Releases the messages to be redelivered as soon as possible.
+     *
+     * @param subscription the subscription name
+     * @param ackIds       the acknowledgement IDs of the received messages
+     * @throws IOException if the call has failed
+     */
+    void release( @Nonnull String subscription, @Nonnull List<String> ackIds ) throws IOException;
+
+    /**
+     * Extends the acknowledgement deadline of the messages still being processed.
+     *
+     * @param subscription       the subscription name
+     * @param ackIds             the acknowledgement IDs of the received messages
+     * @param ackDeadlineSeconds the new deadline in seconds counted from now
+     * @throws IOException if the call has failed
+     */
+    void extend( @Nonnull String subscription, @Nonnull List<String> ackIds, int ackDeadlineSeconds )
+            throws IOException;
+}
@@ -0,0 +1,256 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.api.services.pubsub.model.ReceivedMessage;
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The pull based consumer as an alternative to push delivery, driving the same {@link PubsubMessageListener}
+ * registered in {@code SubscriptionsModule}. Pulled subscriptions are configured by the system property
+ * {@link #SUBSCRIPTIONS_PROPERTY} (comma separated names as registered in the map binder, the same name
+ * is expected for the Pub/Sub subscription). Run by cron (see {@link PullSubscriberServlet}).
+ * <p>
+ * Flow control:
+ * <ul>
+ * <li>{@link #MAX_MESSAGES_PROPERTY} the maximum number of outstanding (pulled, but not yet acknowledged) messages</li>
+ * <li>{@link #MAX_BYTES_PROPERTY} the maximum size of outstanding messages, messages above the limit
+ * are released to be redelivered later</li>
+ * <li>{@link #ACK_BATCH_PROPERTY} the number of acknowledgements sent together</li>
+ * <li>{@link #ACK_DEADLINE_SECONDS_PROPERTY} the acknowledgement deadline of the subscription, once half of it
+ * has elapsed while processing the pulled messages, the deadline of those not processed yet is extended</li>
+ * </ul>
+ * Messages whose processing has failed are released right away to be redelivered. The run ends once there
+ * are no more messages, none of the pulled messages could be processed or the time budget has been exhausted,
+ * the pulled messages not processed within the budget are released.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class PullSubscriber
+{
+    static final String SUBSCRIPTIONS_PROPERTY = "pubsub.pull.subscriptions";
+
+    static final String MAX_MESSAGES_PROPERTY = "pubsub.pull.max.messages";
+
+    static final String MAX_BYTES_PROPERTY = "pubsub.pull.max.bytes";
+
+    static final String ACK_BATCH_PROPERTY = "pubsub.pull.ack.batch";
+
+    static final String ACK_DEADLINE_SECONDS_PROPERTY = "pubsub.pull.ack.deadline.seconds";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( PullSubscriber.class );
+
+    private final Map<String, PubsubMessageListener> listeners;
+
+    private final PubsubPullClient client;
+
+    private final Settings settings;
+
+    @Inject
+    PullSubscriber( Map<String, PubsubMessageListener> listeners, PubsubPullClient client )
+    {
+        this( listeners, client, new Settings(
+                Integer.getInteger( MAX_MESSAGES_PROPERTY, 100 ),
+                Long.getLong( MAX_BYTES_PROPERTY, 10L * 1024 * 1024 ),
+                Integer.getInteger( ACK_BATCH_PROPERTY, 50 ),
+                Integer.getInteger( ACK_DEADLINE_SECONDS_PROPERTY, 10 ) ) );
+    }
+
+    PullSubscriber( Map<String, PubsubMessageListener> listeners, PubsubPullClient client, Settings settings )
+    {
+        this.listeners = listeners;
+        this.client = client;
+        this.settings = settings;
+    }
+
+    /**
+     * Returns the configured names of the subscriptions to be pulled.
+     *
+     * @return the subscription names, empty if none
+     */
+    static List<String> subscriptions()
+    {
+        return Splitter.on( ',' )
+                .trimResults()
+                .omitEmptyStrings()
+                .splitToList( System.getProperty( SUBSCRIPTIONS_PROPERTY, "" ) );
+    }
+
+    /**
+     * Pulls and processes the messages of the subscription until there are no more messages
+     * or the time budget has been exhausted.
+     *
+     * @param subscription the subscription name as registered in the map binder
+     * @param budgetMillis the time budget in milliseconds
+     * @return the number of acknowledged messages
+     * @throws IOException if a Pub/Sub call has failed
+     */
+    public int run( @Nonnull String subscription, long budgetMillis ) throws IOException
+    {
+        checkNotNull( subscription, "Subscription can't be null" );
+        PubsubMessageListener listener = listeners.get( subscription );
+        checkArgument( listener != null, "No listener registered for subscription '" + subscription + "'" );
+
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        Acknowledgements acks = new Acknowledgements( subscription );
+
+        while ( stopwatch.elapsed( TimeUnit.MILLISECONDS ) < budgetMillis )
+        {
+            List<ReceivedMessage> received = client.pull( subscription, settings.maxMessages );
+            if ( received.isEmpty() )
+            {
+                break;
+            }
+
+            List<String> release = new ArrayList<>();
+            int before = acks.count + acks.pending.size();
+            long bytes = 0;
+            Stopwatch deadline = Stopwatch.createStarted();
+
+            for ( int index = 0; index < received.size(); index++ )
+            {
+                if ( stopwatch.elapsed( TimeUnit.MILLISECONDS ) >= budgetMillis )
+                {
+                    // out of the time budget, let the rest redeliver right away
+                    received.subList( index, received.size() ).forEach( next -> release.add( next.getAckId() ) );
+                    break;
+                }
+
+                if ( deadline.elapsed( TimeUnit.MILLISECONDS ) >= settings.ackDeadlineSeconds * 500L )
+                {
+                    // half of the deadline has elapsed, keep the messages not processed yet outstanding
+                    acks.flush();
+                    List<String> remaining = new ArrayList<>();
+                    received.subList( index, received.size() ).forEach( next -> remaining.add( next.getAckId() ) );
+                    client.extend( subscription, remaining, settings.ackDeadlineSeconds );
+                    deadline.reset().start();
+                }
+
+                ReceivedMessage next = received.get( index );
+                PubsubMessage message = next.getMessage();
+                bytes += size( message );
+
+                if ( bytes > settings.maxBytes && bytes > size( message ) )
+                {
+                    // above the limit, but always let at least one message through
+                    release.add( next.getAckId() );
+                    continue;
+                }
+
+                try
+                {
+                    listener.onMessage( message, subscription );
+                    acks.add( next.getAckId() );
+                }
+                catch ( Exception e )
+                {
+                    LOGGER.error( "[" + subscription + "] Processing of the pulled message '"
+                            + message.getMessageId() + "' has failed", e );
+                    release.add( next.getAckId() );
+                }
+            }
+
+            // outstanding messages are acknowledged before next pull
+            acks.flush();
+            if ( !release.isEmpty() )
+            {
+                client.release( subscription, release );
+            }
+
+            if ( acks.count == before )
+            {
+                // none of the messages could be processed, let them redeliver later instead of spinning
+                break;
+            }
+        }
+
+        acks.flush();
+        LOGGER.info( "[" + subscription + "] " + acks.count + " pulled message(s) acknowledged in " + stopwatch );
+        return acks.count;
+    }
+
+    private static long size( PubsubMessage message )
+    {
+        String data = message.getData();
+        return data == null ? 0 : data.length();
+    }
+
+    /**
+     * The acknowledgements sent in batches.
+     */
+    private class Acknowledgements
+    {
+        private final String subscription;
+
+        private final List<String> pending = new ArrayList<>();
+
+        private int count;
+
+        Acknowledgements( String subscription )
+        {
+            this.subscription = subscription;
+        }
+
+        void add( String ackId ) throws IOException
+        {
+            pending.add( ackId );
+            if ( pending.size() >= settings.ackBatch )
+            {
+                flush();
+            }
+        }
+
+        void flush() throws IOException
+        {
+            if ( !pending.isEmpty() )
+            {
+                client.acknowledge( subscription, new ArrayList<>( pending ) );
+                count += pending.size();
+                pending.clear();
+            }
+        }
+    }
+
+    /**
+     * The flow control settings.
+     */
+    static final class Settings
+    {
+        private final int maxMessages;
+
+        private final long maxBytes;
+
+        private final int ackBatch;
+
+        private final int ackDeadlineSeconds;
+
+        Settings( int maxMessages, long maxBytes, int ackBatch, int ackDeadlineSeconds )
+        {
+            checkArgument( maxMessages > 0, "Max messages must be positive" );
+            checkArgument( maxBytes > 0, "Max bytes must be positive" );
+            checkArgument( ackBatch > 0, "Ack batch must be positive" );
+            checkArgument( ackDeadlineSeconds > 0, "Ack deadline must be positive" );
+
+            this.maxMessages = maxMessages;
+            this.maxBytes = maxBytes;
+            this.ackBatch = ackBatch;
+            this.ackDeadlineSeconds = ackDeadlineSeconds;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cron handler ({@link #PATH}, opt-in job in {@code cron.yaml}) that runs the {@link PullSubscriber}
+ * for each configured subscription. Does nothing if no subscription is configured to be pulled.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class PullSubscriberServlet
+        extends HttpServlet
+{
+    public static final String PATH = "/cron/pubsub-pull";
+
+    /**
+     * The time budget of the single cron run, shorter than the cron schedule.
+     */
+    static final long BUDGET_MILLIS = TimeUnit.SECONDS.toMillis( 50 );
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( PullSubscriberServlet.class );
+
+    private static final long serialVersionUID = -1735096540392885113L;
+
+    private final PullSubscriber subscriber;
+
+    @Inject
+    PullSubscriberServlet( PullSubscriber subscriber )
+    {
+        this.subscriber = subscriber;
+    }
+
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response )
+    {
+        List<String> subscriptions = PullSubscriber.subscriptions();
+        if ( subscriptions.isEmpty() )
+        {
+            response.setStatus( HttpServletResponse.SC_OK );
+            return;
+        }
+
+        long budget = BUDGET_MILLIS / subscriptions.size();
+        for ( String subscription : subscriptions )
+        {
+            try
+            {
+                subscriber.run( subscription, budget );
+            }
+            catch ( IOException | RuntimeException e )
+            {
+                LOGGER.error( "Pull of the subscription '" + subscription + "' has failed", e );
+            }
+        }
+        response.setStatus( HttpServletResponse.SC_OK );
+    }
+}
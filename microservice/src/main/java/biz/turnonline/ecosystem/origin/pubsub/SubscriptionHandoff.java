@@ -0,0 +1,246 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.QueueStatistics;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.common.net.UrlEscapers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The hand-off of the Pub/Sub push messages to the push queue {@link #QUEUE} (see {@code queue.yaml}),
+ * processed later by {@link SubscriptionHandoffServlet}. It lets acknowledge the push request
+ * right away, without waiting for the (possibly slow) message processing.
+ * <p>
+ * Backpressure: once the queue depth reaches the {@link #MAX_DEPTH_PROPERTY} limit, the hand-off is being
+ * refused with {@link HandoffRejectedException}, the push request fails and Pub/Sub redelivers the message later.
+ * The queue depth is taken from the queue statistics, fetched at most once per {@link #STATISTICS_SECONDS},
+ * plus tasks added by this instance since.
+ * <p>
+ * An in-instance worker pool is not an option here, under automatic scaling a background work
+ * can't outlive the request that has started it.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class SubscriptionHandoff
+        implements StatsReporter
+{
+    static final String QUEUE = "subscription-handoff";
+
+    /**
+     * The header with the time in millis the message has been handed off.
+     */
+    static final String ENQUEUED_HEADER = "X-Handoff-Enqueued";
+
+    static final String MAX_DEPTH_PROPERTY = "pubsub.handoff.max.depth";
+
+    static final int DEFAULT_MAX_DEPTH = 1000;
+
+    static final long STATISTICS_SECONDS = 5;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( SubscriptionHandoff.class );
+
+    private final Object statisticsLock = new Object();
+
+    private final AtomicInteger addedSinceStatistics = new AtomicInteger();
+
+    private final LongAdder handedOff = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder processed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder deadLettered = new LongAdder();
+
+    private final LongAdder latencyMillis = new LongAdder();
+
+    private final LongAccumulator maxLatencyMillis = new LongAccumulator( Long::max, 0 );
+
+    private final LongAdder processingMillis = new LongAdder();
+
+    private final LongAccumulator maxProcessingMillis = new LongAccumulator( Long::max, 0 );
+
+    private final AtomicLong statisticsFetched = new AtomicLong();
+
+    private volatile QueueStatistics statistics;
+
+    /**
+     * Returns the configured maximum queue depth.
+     *
+     * @return the maximum queue depth
+     */
+    static int maxDepth()
+    {
+        return Integer.getInteger( MAX_DEPTH_PROPERTY, DEFAULT_MAX_DEPTH );
+    }
+
+    /**
+     * Hands off the message to be processed by the push queue.
+     *
+     * @param message      the Pub/Sub message
+     * @param subscription the subscription name the listener has been registered with
+     * @throws HandoffRejectedException if the queue is saturated
+     * @throws IOException              if message serialization has failed
+     */
+    void handoff( @Nonnull PubsubMessage message, @Nonnull String subscription ) throws IOException
+    {
+        checkNotNull( message, "Message can't be null" );
+        checkNotNull( subscription, "Subscription can't be null" );
+
+        int depth = depth();
+        if ( depth >= maxDepth() )
+        {
+            rejected.increment();
+            throw new HandoffRejectedException( "Hand-off queue '" + QUEUE + "' is saturated, depth: " + depth );
+        }
+
+        byte[] payload = JacksonFactory.getDefaultInstance().toByteArray( message );
+        QueueFactory.getQueue( QUEUE ).add( TaskOptions.Builder
+                .withUrl( SubscriptionHandoffServlet.PATH
+                        + "?" + SubscriptionHandoffServlet.SUBSCRIPTION
+                        + "=" + UrlEscapers.urlFormParameterEscaper().escape( subscription ) )
+                .header( ENQUEUED_HEADER, String.valueOf( System.currentTimeMillis() ) )
+                .payload( payload, "application/json" ) );
+
+        addedSinceStatistics.incrementAndGet();
+        handedOff.increment();
+    }
+
+    /**
+     * Deserializes the handed off message.
+     *
+     * @param payload the task payload
+     * @return the Pub/Sub message
+     * @throws IOException if message deserialization has failed
+     */
+    static PubsubMessage message( @Nonnull byte[] payload ) throws IOException
+    {
+        String json = new String( payload, StandardCharsets.UTF_8 );
+        return JacksonFactory.getDefaultInstance().fromString( json, PubsubMessage.class );
+    }
+
+    /**
+     * Records the processed message.
+     *
+     * @param enqueued   the time in millis the message has been handed off, or {@code null} if unknown
+     * @param processing the processing time in millis
+     * @param success    true if the message has been processed successfully
+     */
+    void processed( Long enqueued, long processing, boolean success )
+    {
+        if ( success )
+        {
+            processed.increment();
+        }
+        else
+        {
+            failed.increment();
+        }
+
+        if ( enqueued != null )
+        {
+            long latency = Math.max( 0, System.currentTimeMillis() - enqueued );
+            latencyMillis.add( latency );
+            maxLatencyMillis.accumulate( latency );
+        }
+
+        processingMillis.add( processing );
+        maxProcessingMillis.accumulate( processing );
+    }
+
+    /**
+     * Records the message given up after repeated processing failures.
+     */
+    void deadLettered()
+    {
+        deadLettered.increment();
+    }
+
+    /**
+     * Returns the estimated queue depth.
+     */
+    private int depth()
+    {
+        QueueStatistics current = statistics();
+        return ( current == null ? 0 : current.getNumTasks() ) + addedSinceStatistics.get();
+    }
+
+    private QueueStatistics statistics()
+    {
+        long now = System.nanoTime();
+        if ( statistics != null && now - statisticsFetched.get() < TimeUnit.SECONDS.toNanos( STATISTICS_SECONDS ) )
+        {
+            return statistics;
+        }
+
+        synchronized ( statisticsLock )
+        {
+            if ( statistics == null || now - statisticsFetched.get() >= TimeUnit.SECONDS.toNanos( STATISTICS_SECONDS ) )
+            {
+                try
+                {
+                    Queue queue = QueueFactory.getQueue( QUEUE );
+                    statistics = queue.fetchStatistics();
+                    addedSinceStatistics.set( 0 );
+                }
+                catch ( RuntimeException e )
+                {
+                    // keep the last known statistics, don't block the hand-off
+                    LOGGER.warn( "Fetching statistics of the queue '" + QUEUE + "' has failed", e );
+                }
+                statisticsFetched.set( now );
+            }
+        }
+        return statistics;
+    }
+
+    @Override
+    public String name()
+    {
+        return "subscriptionHandoff";
+    }
+
+    @Override
+    public Map<String, Object> report()
+    {
+        long done = processed.sum() + failed.sum();
+        QueueStatistics current = statistics;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put( "maxDepth", maxDepth() );
+        report.put( "queueDepth", current == null ? null : current.getNumTasks() );
+        report.put( "queueExecutedLastMinute", current == null ? null : current.getExecutedLastMinute() );
+        report.put( "queueRequestsInFlight", current == null ? null : current.getRequestsInFlight() );
+        report.put( "handedOff", handedOff.sum() );
+        report.put( "rejected", rejected.sum() );
+        report.put( "processed", processed.sum() );
+        report.put( "failed", failed.sum() );
+        report.put( "deadLettered", deadLettered.sum() );
+        report.put( "avgLatencyMillis", done == 0 ? 0 : latencyMillis.sum() / done );
+        report.put( "maxLatencyMillis", maxLatencyMillis.get() );
+        report.put( "avgProcessingMillis", done == 0 ? 0 : processingMillis.sum() / done );
+        report.put( "maxProcessingMillis", maxProcessingMillis.get() );
+        return report;
+    }
+}
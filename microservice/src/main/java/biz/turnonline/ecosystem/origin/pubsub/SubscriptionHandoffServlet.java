@@ -0,0 +1,118 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.common.base.Stopwatch;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Longs;
+import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The push queue handler ({@link #PATH}) of the messages handed off by {@link SubscriptionHandoff}.
+ * Failed message processing responds with an error status, the task will be retried by the queue
+ * according to its retry parameters.
+ * <p>
+ * The handed off message has been already acknowledged to Pub/Sub, the task is its only copy.
+ * Once the message processing is still failing {@link #DEAD_LETTER_HOURS} after the hand-off, the message
+ * is logged as a dead letter (including its payload to be replayed) and the task is completed.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class SubscriptionHandoffServlet
+        extends HttpServlet
+{
+    public static final String PATH = "/_ah/queue/subscription-handoff";
+
+    static final String SUBSCRIPTION = "subscription";
+
+    /**
+     * The age of the failing task to give up at, less than the {@code task_age_limit} of the queue.
+     */
+    static final long DEAD_LETTER_HOURS = 24;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( SubscriptionHandoffServlet.class );
+
+    private static final long serialVersionUID = 7740195838062951178L;
+
+    private final Map<String, PubsubMessageListener> listeners;
+
+    private final SubscriptionHandoff handoff;
+
+    @Inject
+    SubscriptionHandoffServlet( Map<String, PubsubMessageListener> listeners, SubscriptionHandoff handoff )
+    {
+        this.listeners = listeners;
+        this.handoff = handoff;
+    }
+
+    @Override
+    protected void doPost( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        String subscription = request.getParameter( SUBSCRIPTION );
+        PubsubMessageListener listener = subscription == null ? null : listeners.get( subscription );
+
+        if ( !( listener instanceof FastAckListener ) )
+        {
+            // nothing to retry
+            LOGGER.error( "No fast-ack listener registered for subscription '" + subscription + "'" );
+            response.setStatus( HttpServletResponse.SC_OK );
+            return;
+        }
+
+        byte[] payload = ByteStreams.toByteArray( request.getInputStream() );
+        PubsubMessage message;
+        try
+        {
+            message = SubscriptionHandoff.message( payload );
+        }
+        catch ( IOException e )
+        {
+            // not deserializable message never will be, drop it
+            LOGGER.error( "Handed off message deserialization has failed for subscription '" + subscription + "'", e );
+            response.setStatus( HttpServletResponse.SC_OK );
+            return;
+        }
+
+        String header = request.getHeader( SubscriptionHandoff.ENQUEUED_HEADER );
+        Long enqueued = header == null ? null : Longs.tryParse( header );
+        Stopwatch stopwatch = Stopwatch.createStarted();
+
+        try
+        {
+            ( ( FastAckListener ) listener ).deliver( message );
+            handoff.processed( enqueued, stopwatch.elapsed( TimeUnit.MILLISECONDS ), true );
+            response.setStatus( HttpServletResponse.SC_OK );
+        }
+        catch ( Exception e )
+        {
+            handoff.processed( enqueued, stopwatch.elapsed( TimeUnit.MILLISECONDS ), false );
+            LOGGER.error( "Processing of the handed off message '" + message.getMessageId()
+                    + "' has failed for subscription '" + subscription + "'", e );
+
+            if ( enqueued != null
+                    && System.currentTimeMillis() - enqueued >= TimeUnit.HOURS.toMillis( DEAD_LETTER_HOURS ) )
+            {
+                handoff.deadLettered();
+                LOGGER.error( "Dead letter of the subscription '" + subscription + "', giving up the message '"
+                        + message.getMessageId() + "' handed off at " + Instant.ofEpochMilli( enqueued )
+                        + ": " + new String( payload, StandardCharsets.UTF_8 ) );
+                response.setStatus( HttpServletResponse.SC_OK );
+                return;
+            }
+            response.setStatus( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+        }
+    }
+}
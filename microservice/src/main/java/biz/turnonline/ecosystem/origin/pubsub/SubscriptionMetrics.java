@@ -0,0 +1,181 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import biz.turnonline.ecosystem.origin.stats.Histogram;
+import biz.turnonline.ecosystem.origin.stats.Rate;
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+
+import javax.annotation.Nonnull;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The end-to-end Pub/Sub metrics of this instance per subscription name (as registered in the map binder):
+ * <ul>
+ * <li>publish to processed lag</li>
+ * <li>processing time, total and split to parse, datastore load and save (if recorded by the listener)</li>
+ * <li>message rate over the last minute</li>
+ * <li>counts of received, failed, invalid and uninterested messages</li>
+ * </ul>
+ * Rendered by the admin only stats handler, a growing lag is the first sign of a backlog.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class SubscriptionMetrics
+        implements StatsReporter
+{
+    private final ConcurrentMap<String, Metrics> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Records the received message.
+     *
+     * @param subscription the subscription name
+     */
+    public void received( @Nonnull String subscription )
+    {
+        Metrics metrics = of( subscription );
+        metrics.received.increment();
+        metrics.rate.mark();
+    }
+
+    /**
+     * Records the processed message.
+     *
+     * @param subscription the subscription name
+     * @param lagMillis    the time elapsed since the message has been published, negative if unknown
+     * @param millis       the processing time
+     * @param success      true if processed successfully
+     */
+    public void processed( @Nonnull String subscription, long lagMillis, long millis, boolean success )
+    {
+        Metrics metrics = of( subscription );
+        if ( success )
+        {
+            if ( lagMillis >= 0 )
+            {
+                metrics.lag.record( lagMillis );
+            }
+        }
+        else
+        {
+            metrics.failed.increment();
+        }
+        metrics.processing.record( millis );
+    }
+
+    /**
+     * Records the payload parsing time.
+     *
+     * @param subscription the subscription name
+     * @param millis       the parsing time
+     */
+    public void parse( @Nonnull String subscription, long millis )
+    {
+        of( subscription ).parse.record( millis );
+    }
+
+    /**
+     * Records the datastore load time.
+     *
+     * @param subscription the subscription name
+     * @param millis       the load time
+     */
+    public void load( @Nonnull String subscription, long millis )
+    {
+        of( subscription ).load.record( millis );
+    }
+
+    /**
+     * Records the datastore save time.
+     *
+     * @param subscription the subscription name
+     * @param millis       the save time
+     */
+    public void save( @Nonnull String subscription, long millis )
+    {
+        of( subscription ).save.record( millis );
+    }
+
+    /**
+     * Records the message dropped as uninterested data type.
+     *
+     * @param subscription the subscription name
+     */
+    public void uninterested( @Nonnull String subscription )
+    {
+        of( subscription ).uninterested.increment();
+    }
+
+    /**
+     * Records the message dropped due to missing mandatory attributes.
+     *
+     * @param subscription the subscription name
+     */
+    public void invalid( @Nonnull String subscription )
+    {
+        of( subscription ).invalid.increment();
+    }
+
+    private Metrics of( String subscription )
+    {
+        return subscriptions.computeIfAbsent( subscription, name -> new Metrics() );
+    }
+
+    @Override
+    public String name()
+    {
+        return "subscriptions";
+    }
+
+    @Override
+    public Map<String, Object> report()
+    {
+        Map<String, Object> report = new TreeMap<>();
+        subscriptions.forEach( ( name, metrics ) -> report.put( name, metrics.report() ) );
+        return report;
+    }
+
+    private static class Metrics
+    {
+        private final LongAdder received = new LongAdder();
+
+        private final LongAdder failed = new LongAdder();
+
+        private final LongAdder invalid = new LongAdder();
+
+        private final LongAdder uninterested = new LongAdder();
+
+        private final Rate rate = new Rate();
+
+        private final Histogram lag = new Histogram();
+
+        private final Histogram processing = new Histogram();
+
+        private final Histogram parse = new Histogram();
+
+        private final Histogram load = new Histogram();
+
+        private final Histogram save = new Histogram();
+
+        Map<String, Object> report()
+        {
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put( "received", received.sum() );
+            report.put( "perSecond", rate.perSecond() );
+            report.put( "failed", failed.sum() );
+            report.put( "invalid", invalid.sum() );
+            report.put( "uninterested", uninterested.sum() );
+            report.put( "lagMillis", lag.snapshot() );
+            report.put( "processingMillis", processing.snapshot() );
+            report.put( "parseMillis", parse.snapshot() );
+            report.put( "loadMillis", load.snapshot() );
+            report.put( "saveMillis", save.snapshot() );
+            return report;
+        }
+    }
+}
@@ -5,6 +5,9 @@ import com.google.common.base.MoreObjects;
 import org.ctoolkit.restapi.client.NotFoundException;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The dedicated provider to handle local account initialization and retrieval.
@@ -18,6 +21,9 @@ public interface LocalAccountProvider
      * <p>
      * If {@link LocalAccount} instance is being accessed for the first time, then it will be stored
      * in datastore with updated values taken from the remote account.
+     * <p>
+     * The returned instance is cached in-process and shared by concurrent requests, it must not be changed.
+     * Use {@link #getForUpdate(Long)} to get an instance to be changed and saved.
      *
      * @param builder mandatory properties are: email, identityId {@link Builder#email}, {@link Builder#identityId}
      * @return the local lightweight account
@@ -25,8 +31,27 @@ public interface LocalAccountProvider
      */
     LocalAccount initGet( @Nonnull Builder builder );
 
+    /**
+     * The asynchronous counterpart of the {@link #initGet(Builder)}. The retrieval is being started immediately,
+     * the caller might proceed with another work and join once the account is needed.
+     * <p>
+     * If remote account has not been found, the future completes exceptionally by the {@link NotFoundException}
+     * as a cause, thus {@link CompletableFuture#join()} throws {@link java.util.concurrent.CompletionException}
+     * and {@link CompletableFuture#get()} throws {@link java.util.concurrent.ExecutionException} wrapping it.
+     * <p>
+     * The returned instance is cached in-process and shared by concurrent requests, it must not be changed.
+     * Use {@link #getForUpdate(Long)} to get an instance to be changed and saved.
+     *
+     * @param builder mandatory properties are: email, identityId {@link Builder#email}, {@link Builder#identityId}
+     * @return the future of the local lightweight account
+     */
+    CompletableFuture<LocalAccount> initGetAsync( @Nonnull Builder builder );
+
     /**
      * Returns the local lightweight account entity instance identified by email account.
+     * <p>
+     * The returned instance is cached in-process and shared by concurrent requests, it must not be changed.
+     * Use {@link #getForUpdate(Long)} to get an instance to be changed and saved.
      *
      * @param email the login email address of the account
      * @return the local lightweight account or {@code null} if not found
@@ -35,12 +60,86 @@ public interface LocalAccountProvider
 
     /**
      * Returns the local lightweight account entity instance identified by account ID.
+     * <p>
+     * The returned instance is cached in-process and shared by concurrent requests, it must not be changed.
+     * Use {@link #getForUpdate(Long)} to get an instance to be changed and saved.
      *
      * @param id the account unique identification
      * @return the local lightweight account or {@code null} if not found
      */
     LocalAccount get( @Nonnull Long id );
 
+    /**
+     * The asynchronous counterpart of the {@link #get(String)}, the account is shared the same way.
+     *
+     * @param email the login email address of the account
+     * @return the future of the local lightweight account, completed with {@code null} if not found
+     */
+    CompletableFuture<LocalAccount> getAsync( @Nonnull String email );
+
+    /**
+     * The asynchronous counterpart of the {@link #get(Long)}, the account is shared the same way.
+     *
+     * @param id the account unique identification
+     * @return the future of the local lightweight account, completed with {@code null} if not found
+     */
+    CompletableFuture<LocalAccount> getAsync( @Nonnull Long id );
+
+    /**
+     * Returns the local lightweight account entity instances identified by account IDs,
+     * retrieved with single batch load.
+     * <p>
+     * The returned instances are cached in-process and shared by concurrent requests, they must not be changed.
+     * Use {@link #getAllForUpdate(Collection)} to get instances to be changed and saved.
+     *
+     * @param ids the account unique identifications
+     * @return the map of found accounts keyed by account ID in the order of the given IDs,
+     * accounts not found are omitted
+     */
+    Map<Long, LocalAccount> getAll( @Nonnull Collection<Long> ids );
+
+    /**
+     * Returns the local lightweight account entity instances identified by email accounts,
+     * retrieved with batch loads.
+     * <p>
+     * The returned instances are cached in-process and shared by concurrent requests, they must not be changed.
+     * Use {@link #getForUpdate(Long)} to get an instance to be changed and saved.
+     *
+     * @param emails the login email addresses of the accounts
+     * @return the map of found accounts keyed by email (as given) in the order of the given emails,
+     * accounts not found are omitted
+     */
+    Map<String, LocalAccount> getAllByEmail( @Nonnull Collection<String> emails );
+
+    /**
+     * Returns the local account instance to be changed and saved. The account is evicted from the in-process
+     * cache and loaded from the datastore as an instance not shared with any other caller.
+     * Once saved, the account is cached again by the next retrieval (the state read concurrently
+     * before the save might be served by the in-process cache of this instance up to its expiration).
+     *
+     * @param id the account unique identification
+     * @return the local lightweight account or {@code null} if not found
+     */
+    LocalAccount getForUpdate( @Nonnull Long id );
+
+    /**
+     * Returns the local account instances to be changed and saved, retrieved with single batch load,
+     * see {@link #getForUpdate(Long)}.
+     *
+     * @param ids the account unique identifications
+     * @return the map of found accounts keyed by account ID in the order of the given IDs,
+     * accounts not found are omitted
+     */
+    Map<Long, LocalAccount> getAllForUpdate( @Nonnull Collection<Long> ids );
+
+    /**
+     * Loads the most recently active accounts to the in-process cache, intended for instance warmup.
+     *
+     * @param limit the maximum number of accounts to be loaded
+     * @return the number of accounts loaded
+     */
+    int preload( int limit );
+
     class Builder
     {
         private Long accountId;
@@ -2,8 +2,11 @@ package biz.turnonline.ecosystem.origin.service;
 
 import biz.turnonline.ecosystem.origin.account.LocalAccount;
 import biz.turnonline.ecosystem.origin.account.LocalAccountProviderImpl;
+import biz.turnonline.ecosystem.origin.account.LocalAccountStats;
+import biz.turnonline.ecosystem.origin.cache.CacheStats;
 import biz.turnonline.ecosystem.origin.cache.RemoteAccountCache;
 import biz.turnonline.ecosystem.origin.guice.EntityRegistrarModule;
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
 import biz.turnonline.ecosystem.steward.facade.AccountStewardAdapterModule;
 import biz.turnonline.ecosystem.steward.facade.AccountStewardClientModule;
 import biz.turnonline.ecosystem.steward.model.Account;
@@ -18,6 +21,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
 import org.ctoolkit.restapi.client.PubSub;
 import org.ctoolkit.restapi.client.appengine.CtoolkitRestFacadeAppEngineModule;
 import org.ctoolkit.restapi.client.appengine.CtoolkitRestFacadeDefaultOrikaModule;
@@ -57,6 +61,11 @@ public class MicroserviceModule
         bind( new TypeLiteral<TokenProvider<LocalAccount>>()
         {
         } ).to( ServerToEcosystemCallConfig.class );
+
+        // runtime statistics rendered for administrators
+        Multibinder<StatsReporter> reporters = Multibinder.newSetBinder( binder(), StatsReporter.class );
+        reporters.addBinding().to( LocalAccountStats.class );
+        reporters.addBinding().to( CacheStats.class );
     }
 
     private ObjectMapper baseObjectMapper()
@@ -1,16 +1,41 @@
 package biz.turnonline.ecosystem.origin.service;
 
 import biz.turnonline.ecosystem.origin.account.AccountStewardChangesSubscription;
+import biz.turnonline.ecosystem.origin.pubsub.FastAckListener;
+import biz.turnonline.ecosystem.origin.pubsub.GoogleApisPubsubPullClient;
+import biz.turnonline.ecosystem.origin.pubsub.MeteredListener;
+import biz.turnonline.ecosystem.origin.pubsub.PubsubPullClient;
+import biz.turnonline.ecosystem.origin.pubsub.SubscriptionHandoff;
+import biz.turnonline.ecosystem.origin.pubsub.SubscriptionMetrics;
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+import com.google.api.services.pubsub.model.PubsubMessage;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.multibindings.MapBinder;
+import com.google.inject.multibindings.Multibinder;
 import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
 import org.ctoolkit.restapi.client.pubsub.SubscriptionsListenerModule;
 
+import javax.annotation.Nonnull;
+
+import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ACCOUNT_EMAIL;
+import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ACCOUNT_IDENTITY_ID;
+import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ACCOUNT_UNIQUE_ID;
+import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.DATA_TYPE;
+import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ENCODED_UNIQUE_KEY;
+
 /**
  * Pub/Sub subscription configuration for following:
  * <ul>
  * <li>account.changes</li>
  * </ul>
+ * Listeners are provisioned lazily on the first message, thus instances serving plain API traffic
+ * don't pay for the listener dependencies (for example REST Facade with Account Steward adapter) at startup.
+ * <p>
+ * Each listener might be configured to acknowledge the push request right away and process the message
+ * later via push queue, see {@link FastAckListener}. Lag, rate and processing time of each subscription
+ * are recorded by {@link MeteredListener}. Alternatively to push delivery, subscriptions might be pulled,
+ * see {@code PullSubscriber}.
  *
  * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
  */
@@ -24,7 +49,47 @@ public class SubscriptionsModule
 
         MapBinder<String, PubsubMessageListener> map;
         map = MapBinder.newMapBinder( binder(), String.class, PubsubMessageListener.class );
-        map.addBinding( "account.changes" ).to( AccountStewardChangesSubscription.class );
+        map.addBinding( AccountStewardChangesSubscription.NAME )
+                .toInstance( new FastAckListener( AccountStewardChangesSubscription.NAME,
+                        metered( AccountStewardChangesSubscription.NAME, AccountStewardChangesSubscription.class ),
+                        getProvider( SubscriptionHandoff.class ),
+                        DATA_TYPE, ENCODED_UNIQUE_KEY, ACCOUNT_UNIQUE_ID, ACCOUNT_EMAIL, ACCOUNT_IDENTITY_ID ) );
+
+        // used only if a subscription is configured to be pulled, see PullSubscriber
+        bind( PubsubPullClient.class ).to( GoogleApisPubsubPullClient.class );
+
+        Multibinder<StatsReporter> reporters = Multibinder.newSetBinder( binder(), StatsReporter.class );
+        reporters.addBinding().to( SubscriptionHandoff.class );
+        reporters.addBinding().to( SubscriptionMetrics.class );
+    }
+
+    private PubsubMessageListener metered( @Nonnull String name,
+                                           @Nonnull Class<? extends PubsubMessageListener> listener )
+    {
+        return new MeteredListener( name,
+                new LazyListener( getProvider( listener ) ),
+                getProvider( SubscriptionMetrics.class ) );
+    }
+
+    /**
+     * The listener that provisions its target listener on the first message.
+     */
+    private static class LazyListener
+            implements PubsubMessageListener
+    {
+        private static final long serialVersionUID = 3571964418437726903L;
+
+        private final transient Provider<? extends PubsubMessageListener> provider;
+
+        LazyListener( @Nonnull Provider<? extends PubsubMessageListener> provider )
+        {
+            this.provider = provider;
+        }
 
+        @Override
+        public void onMessage( @Nonnull PubsubMessage message, @Nonnull String subscription ) throws Exception
+        {
+            provider.get().onMessage( message, subscription );
+        }
     }
 }
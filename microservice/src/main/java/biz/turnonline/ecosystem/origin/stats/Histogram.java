@@ -0,0 +1,113 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The lock free histogram of the millisecond values with fixed bucket boundaries,
+ * cheap enough to be recorded on every request. Might be used for other non-negative values
+ * of similar magnitude too, such as microseconds or bytes. Percentiles are estimated as the upper bound
+ * of the bucket the percentile falls into.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public final class Histogram
+{
+    private static final long[] BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500,
+            1_000, 2_000, 5_000, 10_000, 30_000, 60_000, 120_000, 300_000, 600_000, Long.MAX_VALUE};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator( Long::max, 0 );
+
+    public Histogram()
+    {
+        for ( int index = 0; index < buckets.length; index++ )
+        {
+            buckets[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the value, a negative value is recorded as zero.
+     *
+     * @param millis the value in milliseconds
+     */
+    public void record( long millis )
+    {
+        long value = Math.max( 0, millis );
+        int index = 0;
+        while ( value > BOUNDS[index] )
+        {
+            index++;
+        }
+
+        buckets[index].increment();
+        count.increment();
+        sum.add( value );
+        max.accumulate( value );
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count
+     */
+    public long count()
+    {
+        return count.sum();
+    }
+
+    /**
+     * Returns the estimated percentile value.
+     *
+     * @param percentile the percentile in range (0, 1]
+     * @return the upper bound of the bucket the percentile falls into (capped by the maximum), 0 if empty
+     */
+    public long percentile( double percentile )
+    {
+        long total = count.sum();
+        if ( total == 0 )
+        {
+            return 0;
+        }
+
+        long rank = ( long ) Math.ceil( percentile * total );
+        long cumulative = 0;
+        for ( int index = 0; index < buckets.length; index++ )
+        {
+            cumulative += buckets[index].sum();
+            if ( cumulative >= rank )
+            {
+                return Math.min( BOUNDS[index], max.get() );
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the histogram snapshot to be rendered as a part of the report.
+     *
+     * @return the count, average, maximum and percentiles
+     */
+    public Map<String, Object> snapshot()
+    {
+        long total = count.sum();
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put( "count", total );
+        snapshot.put( "avg", total == 0 ? 0 : sum.sum() / total );
+        snapshot.put( "p50", percentile( 0.5 ) );
+        snapshot.put( "p90", percentile( 0.9 ) );
+        snapshot.put( "p99", percentile( 0.99 ) );
+        snapshot.put( "max", max.get() );
+        return snapshot;
+    }
+}
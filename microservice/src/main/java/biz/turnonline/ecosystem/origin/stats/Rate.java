@@ -0,0 +1,68 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The event rate over the last minute, counted in one second slots.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public final class Rate
+{
+    private static final int SLOTS = 60;
+
+    private final AtomicLongArray counts = new AtomicLongArray( SLOTS );
+
+    private final AtomicLongArray seconds = new AtomicLongArray( SLOTS );
+
+    /**
+     * Records single event.
+     */
+    public void mark()
+    {
+        mark( now() );
+    }
+
+    void mark( long second )
+    {
+        // the nano time might be negative
+        int slot = Math.floorMod( second, SLOTS );
+
+        long current = seconds.get( slot );
+        if ( current != second && seconds.compareAndSet( slot, current, second ) )
+        {
+            counts.set( slot, 0 );
+        }
+        counts.incrementAndGet( slot );
+    }
+
+    /**
+     * Returns the average number of events per second over the last minute.
+     *
+     * @return the events per second
+     */
+    public double perSecond()
+    {
+        return perSecond( now() );
+    }
+
+    double perSecond( long now )
+    {
+        long total = 0;
+        for ( int slot = 0; slot < SLOTS; slot++ )
+        {
+            long age = now - seconds.get( slot );
+            if ( age >= 0 && age < SLOTS )
+            {
+                total += counts.get( slot );
+            }
+        }
+        return ( double ) total / SLOTS;
+    }
+
+    private static long now()
+    {
+        return TimeUnit.NANOSECONDS.toSeconds( System.nanoTime() );
+    }
+}
@@ -0,0 +1,32 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import java.util.Map;
+
+/**
+ * The source of the runtime statistics, rendered by {@link StatsServlet} for administrators.
+ * <p>
+ * In order to add a new report section, implement this interface and register it in Guice module:
+ * <pre>
+ * {@code
+ *     Multibinder.newSetBinder( binder(), StatsReporter.class ).addBinding().to( MyStats.class );
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public interface StatsReporter
+{
+    /**
+     * Returns the unique name of the report section.
+     *
+     * @return the name of the section
+     */
+    String name();
+
+    /**
+     * Returns the current values of the statistics. The values must be serializable by Jackson.
+     *
+     * @return the statistics snapshot
+     */
+    Map<String, Object> report();
+}
@@ -0,0 +1,75 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The admin only handler ({@link #PATH}) that renders all registered {@link StatsReporter} as JSON.
+ * Optional {@code section} request parameter limits the output to single report section.
+ * Access is restricted to administrators via security constraint in {@code web.xml}.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+@Singleton
+public class StatsServlet
+        extends HttpServlet
+{
+    public static final String PATH = "/_ah/stats";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( StatsServlet.class );
+
+    private static final long serialVersionUID = -2081725540373326815L;
+
+    private final Set<StatsReporter> reporters;
+
+    /**
+     * Own mapper, the application one serializes {@link Long} as string.
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Inject
+    StatsServlet( Set<StatsReporter> reporters )
+    {
+        this.reporters = reporters;
+    }
+
+    @Override
+    protected void doGet( HttpServletRequest request, HttpServletResponse response ) throws IOException
+    {
+        String section = request.getParameter( "section" );
+        Map<String, Object> stats = new TreeMap<>();
+
+        for ( StatsReporter reporter : reporters )
+        {
+            if ( section != null && !section.equals( reporter.name() ) )
+            {
+                continue;
+            }
+
+            try
+            {
+                stats.put( reporter.name(), reporter.report() );
+            }
+            catch ( RuntimeException e )
+            {
+                LOGGER.error( "Report of '" + reporter.name() + "' has failed", e );
+                stats.put( reporter.name(), e.toString() );
+            }
+        }
+
+        response.setContentType( "application/json" );
+        response.setCharacterEncoding( "UTF-8" );
+        mapper.writerWithDefaultPrettyPrinter().writeValue( response.getWriter(), stats );
+    }
+}
@@ -0,0 +1,92 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link AccountChangeMarks} unit testing against local memcache service.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountChangeMarksTest
+{
+    private static final Long ACCOUNT_ID = 1233219L;
+
+    private static final Instant FIRST = Instant.parse( "2019-05-14T10:15:30.000Z" );
+
+    private static final Instant SECOND = Instant.parse( "2019-05-14T10:15:31.000Z" );
+
+    private static final Instant THIRD = Instant.parse( "2019-05-14T10:15:32.000Z" );
+
+    private final LocalServiceTestHelper helper = new LocalServiceTestHelper( new LocalMemcacheServiceTestConfig() );
+
+    @BeforeMethod
+    public void before()
+    {
+        helper.setUp();
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        helper.tearDown();
+    }
+
+    @Test
+    public void isUnchanged_NoMark()
+    {
+        assertThat( new AccountChangeMarks().isUnchanged( ACCOUNT_ID, 1L ) ).isFalse();
+    }
+
+    @Test
+    public void isUnchanged_RevertAppliedByAnotherInstance()
+    {
+        AccountChangeMarks instanceA = new AccountChangeMarks();
+        AccountChangeMarks instanceB = new AccountChangeMarks();
+
+        instanceA.applied( ACCOUNT_ID, FIRST, "1", 1L );
+        instanceB.applied( ACCOUNT_ID, SECOND, "2", 2L );
+
+        // the revert to the first projection must not be taken as unchanged by the instance A
+        assertThat( instanceA.isUnchanged( ACCOUNT_ID, 1L ) ).isFalse();
+        assertThat( instanceA.isUnchanged( ACCOUNT_ID, 2L ) ).isTrue();
+        assertThat( instanceA.unchangedCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void applied_LaterPublishedMarkWins()
+    {
+        AccountChangeMarks instanceA = new AccountChangeMarks();
+        AccountChangeMarks instanceB = new AccountChangeMarks();
+
+        instanceB.applied( ACCOUNT_ID, THIRD, "3", 3L );
+        // the older message applied concurrently does not overwrite the mark
+        instanceA.applied( ACCOUNT_ID, SECOND, "2", 2L );
+
+        assertThat( instanceA.isUnchanged( ACCOUNT_ID, 2L ) ).isFalse();
+        assertThat( instanceA.isUnchanged( ACCOUNT_ID, 3L ) ).isTrue();
+        assertThat( new AccountChangeMarks().isStale( ACCOUNT_ID, SECOND, "4" ) ).isTrue();
+    }
+
+    @Test
+    public void isStale_DuplicateAndOlder()
+    {
+        AccountChangeMarks tested = new AccountChangeMarks();
+        tested.applied( ACCOUNT_ID, SECOND, "2", 2L );
+
+        assertThat( tested.isStale( ACCOUNT_ID, SECOND, "2" ) ).isTrue();
+        assertThat( tested.isStale( ACCOUNT_ID, FIRST, "1" ) ).isTrue();
+        assertThat( tested.isStale( ACCOUNT_ID, THIRD, "3" ) ).isFalse();
+        assertThat( tested.isStale( ACCOUNT_ID, Instant.EPOCH, "0" ) ).isFalse();
+
+        assertThat( tested.duplicateCount() ).isEqualTo( 1 );
+        assertThat( tested.staleCount() ).isEqualTo( 1 );
+    }
+}
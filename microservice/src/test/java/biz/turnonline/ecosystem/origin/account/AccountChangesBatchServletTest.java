@@ -0,0 +1,168 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Tested;
+import mockit.Verifications;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link AccountChangesBatchServlet} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountChangesBatchServletTest
+{
+    private static final Long ACCOUNT_ID = 1233219L;
+
+    private static final Long FAILING_ACCOUNT_ID = 1233220L;
+
+    @Tested
+    private AccountChangesBatchServlet tested;
+
+    @Injectable
+    private AccountChangesBuffer buffer;
+
+    @Injectable
+    private AccountStewardChangesSubscription subscription;
+
+    @Mocked
+    private HttpServletRequest request;
+
+    @Mocked
+    private HttpServletResponse response;
+
+    @Test
+    public void doPost_AllProcessed_NoOtherDrain() throws IOException
+    {
+        List<TaskHandle> tasks = Collections.singletonList( task( "1", ACCOUNT_ID ) );
+
+        new Expectations()
+        {
+            {
+                buffer.lease();
+                result = tasks;
+
+                //noinspection ConstantConditions
+                subscription.onMessages( ( List<PubsubMessage> ) any, anyString );
+                result = Collections.emptySet();
+            }
+        };
+
+        tested.doPost( request, response );
+
+        new Verifications()
+        {
+            {
+                List<TaskHandle> deleted;
+                buffer.delete( deleted = withCapture() );
+                assertThat( deleted ).containsExactlyElementsIn( tasks );
+
+                buffer.scheduleDrain( anyLong );
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void doPost_Failed_DrainScheduledOnceLeaseExpires() throws IOException
+    {
+        TaskHandle processed = task( "1", ACCOUNT_ID );
+        TaskHandle failing = task( "2", FAILING_ACCOUNT_ID );
+
+        new Expectations()
+        {
+            {
+                buffer.lease();
+                result = Arrays.asList( processed, failing );
+
+                //noinspection ConstantConditions
+                subscription.onMessages( ( List<PubsubMessage> ) any, anyString );
+                result = Collections.singleton( FAILING_ACCOUNT_ID );
+            }
+        };
+
+        tested.doPost( request, response );
+
+        new Verifications()
+        {
+            {
+                List<TaskHandle> deleted;
+                buffer.delete( deleted = withCapture() );
+                assertThat( deleted ).containsExactly( processed );
+
+                buffer.scheduleDrain( TimeUnit.SECONDS.toMillis( AccountChangesBuffer.LEASE_SECONDS ) );
+                times = 1;
+
+                response.setStatus( HttpServletResponse.SC_OK );
+            }
+        };
+    }
+
+    @Test
+    public void doPost_ProcessedPerSubscription() throws IOException
+    {
+        TaskHandle replayed = task( "1", "account.changes.replay:" + ACCOUNT_ID );
+        // buffered by the former version, tagged just by the account ID
+        TaskHandle legacy = task( "2", String.valueOf( FAILING_ACCOUNT_ID ) );
+
+        new Expectations()
+        {
+            {
+                buffer.lease();
+                result = Arrays.asList( replayed, legacy );
+
+                //noinspection ConstantConditions
+                subscription.onMessages( ( List<PubsubMessage> ) any, "account.changes.replay" );
+                result = Collections.emptySet();
+
+                //noinspection ConstantConditions
+                subscription.onMessages( ( List<PubsubMessage> ) any, AccountStewardChangesSubscription.NAME );
+                result = Collections.singleton( FAILING_ACCOUNT_ID );
+            }
+        };
+
+        tested.doPost( request, response );
+
+        new Verifications()
+        {
+            {
+                List<TaskHandle> deleted;
+                buffer.delete( deleted = withCapture() );
+                assertThat( deleted ).containsExactly( replayed );
+            }
+        };
+    }
+
+    private static TaskHandle task( String name, Long accountId ) throws IOException
+    {
+        return task( name, AccountStewardChangesSubscription.NAME + ":" + accountId );
+    }
+
+    private static TaskHandle task( String name, String tag ) throws IOException
+    {
+        PubsubMessage message = new PubsubMessage().setMessageId( name ).setData( "e30=" );
+        TaskOptions options = TaskOptions.Builder
+                .withMethod( TaskOptions.Method.PULL )
+                .taskName( name )
+                .tag( tag )
+                .payload( JacksonFactory.getDefaultInstance().toByteArray( message ) );
+
+        return new TaskHandle( options, AccountChangesBuffer.QUEUE );
+    }
+}
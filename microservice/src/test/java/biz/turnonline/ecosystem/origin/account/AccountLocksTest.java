@@ -0,0 +1,57 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link AccountLocks} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountLocksTest
+{
+    @Test
+    public void lock_SameAccount_Contended() throws InterruptedException
+    {
+        AccountLocks tested = new AccountLocks();
+        Lock lock = tested.lock( 1L );
+
+        CountDownLatch done = new CountDownLatch( 1 );
+        Thread thread = new Thread( () -> {
+            tested.lock( 1L ).unlock();
+            done.countDown();
+        } );
+        thread.start();
+
+        // the other update waits until the lock is released
+        assertThat( done.await( 200, TimeUnit.MILLISECONDS ) ).isFalse();
+        lock.unlock();
+        assertThat( done.await( 5, TimeUnit.SECONDS ) ).isTrue();
+
+        assertThat( tested.acquiredCount() ).isEqualTo( 2L );
+        assertThat( tested.contendedCount() ).isEqualTo( 1L );
+    }
+
+    @Test
+    public void lockAll_SharedStripeLockedOnce()
+    {
+        AccountLocks tested = new AccountLocks();
+
+        List<Lock> locks = tested.lockAll( Arrays.asList( 1L, 1L + AccountLocks.STRIPES * 1000L, 2L ) );
+        assertThat( locks.size() ).isAtMost( 3 );
+
+        AccountLocks.unlockAll( locks );
+
+        // all released, not contended
+        tested.lock( 1L ).unlock();
+        tested.lock( 2L ).unlock();
+        assertThat( tested.contendedCount() ).isEqualTo( 0L );
+    }
+}
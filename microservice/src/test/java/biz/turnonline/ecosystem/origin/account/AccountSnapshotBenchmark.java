@@ -0,0 +1,81 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import biz.turnonline.ecosystem.steward.model.Account;
+import com.google.api.client.util.Base64;
+import org.ctoolkit.restapi.client.pubsub.PubsubCommand;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The micro benchmark of the {@link AccountSnapshot} streaming extraction against the full {@link Account}
+ * binding by {@link PubsubCommand#fromString(String, Class)}. Not a part of the test suite, run it manually:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.mainClass=biz.turnonline.ecosystem.origin.account.AccountSnapshotBenchmark
+ *     -Dexec.classpathScope=test
+ * </pre>
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountSnapshotBenchmark
+{
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    private static volatile Object sink;
+
+    public static void main( String[] args ) throws Exception
+    {
+        for ( String name : new String[]{"account.json", "account-large.json"} )
+        {
+            String data = Base64.encodeBase64String( AccountSnapshotTest.json( name ) );
+
+            run( "full bind   " + name, WARMUP, () -> PubsubCommand.fromString( data, Account.class ) );
+            run( "snapshot    " + name, WARMUP, () -> AccountSnapshot.parse( data ) );
+
+            System.out.println( run( "full bind   " + name, ITERATIONS,
+                    () -> PubsubCommand.fromString( data, Account.class ) ) );
+            System.out.println( run( "snapshot    " + name, ITERATIONS,
+                    () -> AccountSnapshot.parse( data ) ) );
+        }
+    }
+
+    private static String run( String label, int iterations, Call call ) throws Exception
+    {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+
+        for ( int index = 0; index < iterations; index++ )
+        {
+            sink = call.execute();
+        }
+
+        long took = System.nanoTime() - start;
+        long bytes = allocated < 0 ? -1 : allocatedBytes() - allocated;
+
+        return label
+                + ": " + ( took / iterations ) + " ns/op"
+                + ", " + ( iterations * TimeUnit.SECONDS.toNanos( 1 ) / Math.max( took, 1 ) ) + " ops/s"
+                + ( bytes < 0 ? "" : ", " + ( bytes / iterations ) + " B/op" );
+    }
+
+    /**
+     * Returns the bytes allocated by current thread if supported by the JVM, otherwise -1.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ( bean instanceof com.sun.management.ThreadMXBean )
+        {
+            return ( ( com.sun.management.ThreadMXBean ) bean ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+        }
+        return -1;
+    }
+
+    @FunctionalInterface
+    private interface Call
+    {
+        Object execute() throws Exception;
+    }
+}
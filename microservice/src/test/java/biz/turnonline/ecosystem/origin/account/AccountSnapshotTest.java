@@ -0,0 +1,91 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import com.google.api.client.util.Base64;
+import com.google.common.io.ByteStreams;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link AccountSnapshot} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountSnapshotTest
+{
+    @Test
+    public void parse_Account() throws IOException
+    {
+        AccountSnapshot snapshot = AccountSnapshot.parse( json( "account.json" ) );
+
+        assertThat( snapshot.getEmail() ).isEqualTo( "my.account@turnonline.biz" );
+        assertThat( snapshot.getZoneId() ).isEqualTo( "Europe/Paris" );
+        assertThat( snapshot.getLocale() ).isEqualTo( "en" );
+        assertThat( snapshot.getDomicile() ).isNull();
+    }
+
+    @Test
+    public void parse_LargeAccount_NestedSkipped() throws IOException
+    {
+        AccountSnapshot snapshot = AccountSnapshot.parse( json( "account-large.json" ) );
+
+        assertThat( snapshot.getEmail() ).isEqualTo( "my.account@turnonline.biz" );
+        assertThat( snapshot.getZoneId() ).isEqualTo( "Europe/Paris" );
+        assertThat( snapshot.getLocale() ).isEqualTo( "en" );
+        assertThat( snapshot.getDomicile() ).isEqualTo( "SK" );
+    }
+
+    @Test
+    public void parse_Base64Data() throws IOException
+    {
+        String data = Base64.encodeBase64String( json( "account.json" ) );
+        AccountSnapshot snapshot = AccountSnapshot.parse( data );
+
+        assertThat( snapshot.getEmail() ).isEqualTo( "my.account@turnonline.biz" );
+    }
+
+    @Test
+    public void parse_NullValues() throws IOException
+    {
+        byte[] json = "{\"email\":null,\"locale\":null,\"business\":null,\"zoneId\":\"Europe/Paris\"}"
+                .getBytes( StandardCharsets.UTF_8 );
+
+        AccountSnapshot snapshot = AccountSnapshot.parse( json );
+
+        assertThat( snapshot.getEmail() ).isNull();
+        assertThat( snapshot.getLocale() ).isNull();
+        assertThat( snapshot.getDomicile() ).isNull();
+        assertThat( snapshot.getZoneId() ).isEqualTo( "Europe/Paris" );
+    }
+
+    @Test
+    public void projectionHash_EmailCaseInsensitive()
+    {
+        long hash = AccountSnapshot.projectionHash( "My.Account@turnonline.biz", "en", "Europe/Paris", "SK" );
+
+        assertThat( AccountSnapshot.projectionHash( "my.account@turnonline.biz", "en", "Europe/Paris", "SK" ) )
+                .isEqualTo( hash );
+        assertThat( AccountSnapshot.projectionHash( "my.account@turnonline.biz", "sk", "Europe/Paris", "SK" ) )
+                .isNotEqualTo( hash );
+        assertThat( AccountSnapshot.projectionHash( "my.account@turnonline.biz", "en", "Europe/Paris", null ) )
+                .isNotEqualTo( hash );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void parse_NotAnObject() throws IOException
+    {
+        AccountSnapshot.parse( "[]".getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    static byte[] json( String name ) throws IOException
+    {
+        try ( InputStream stream = AccountSnapshotTest.class.getResourceAsStream( name ) )
+        {
+            return ByteStreams.toByteArray( stream );
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package biz.turnonline.ecosystem.origin.account;
 
+import biz.turnonline.ecosystem.origin.cache.RemoteAccountCache;
+import biz.turnonline.ecosystem.origin.pubsub.SubscriptionMetrics;
 import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
 import biz.turnonline.ecosystem.steward.model.Account;
 import com.google.api.services.pubsub.model.PubsubMessage;
@@ -14,8 +16,13 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Set;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.ACCOUNT_EMAIL;
@@ -45,6 +52,27 @@ public class AccountStewardChangesSubscriptionTest
     @Injectable
     private LocalAccountProvider lap;
 
+    @Injectable
+    private LocalAccountCache cache;
+
+    @Injectable
+    private NotFoundAccountCache notFound;
+
+    @Injectable
+    private AccountChangesBuffer buffer;
+
+    @Injectable
+    private AccountChangeMarks marks;
+
+    @Injectable
+    private SubscriptionMetrics metrics;
+
+    @Injectable
+    private AccountLocks locks;
+
+    @Injectable
+    private RemoteAccountCache remoteCache;
+
     @Test
     public void onMessage_ValidPubsubMessage_NoChange() throws Exception
     {
@@ -110,6 +138,9 @@ public class AccountStewardChangesSubscriptionTest
                 lap.initGet( ( LocalAccountProvider.Builder ) any );
                 result = localAccount;
 
+                lap.getForUpdate( ACCOUNT_ID );
+                result = localAccount;
+
                 localAccount.save();
                 times = 1;
             }
@@ -140,6 +171,9 @@ public class AccountStewardChangesSubscriptionTest
                 lap.initGet( ( LocalAccountProvider.Builder ) any );
                 result = localAccount;
 
+                lap.getForUpdate( ACCOUNT_ID );
+                result = localAccount;
+
                 localAccount.save();
                 times = 1;
             }
@@ -183,6 +217,9 @@ public class AccountStewardChangesSubscriptionTest
                 lap.initGet( ( LocalAccountProvider.Builder ) any );
                 result = localAccount;
 
+                lap.getForUpdate( ACCOUNT_ID );
+                result = localAccount;
+
                 localAccount.save();
                 times = 1;
             }
@@ -196,6 +233,54 @@ public class AccountStewardChangesSubscriptionTest
         assertThat( localAccount.getLocale() ).isEqualTo( Locale.ENGLISH );
     }
 
+    @Test
+    public void onMessage_CachedInstanceNotChanged() throws Exception
+    {
+        LocalAccount cached = new LocalAccount( new LocalAccountProvider.Builder()
+                .accountId( ACCOUNT_ID )
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) );
+        cached.setZoneId( "America/Chicago" );
+
+        LocalAccount fresh = new LocalAccount( new LocalAccountProvider.Builder()
+                .accountId( ACCOUNT_ID )
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) );
+        fresh.setZoneId( "America/Chicago" );
+
+        new Expectations( LocalAccount.class )
+        {
+            {
+                //noinspection ConstantConditions
+                lap.initGet( ( LocalAccountProvider.Builder ) any );
+                result = cached;
+
+                lap.getForUpdate( ACCOUNT_ID );
+                result = fresh;
+
+                fresh.save();
+            }
+        };
+
+        tested.onMessage( validPubsubMessage(), "account.changes" );
+
+        // the instance shared with concurrent readers stays untouched
+        assertThat( cached.getZoneId() ).isEqualTo( ZoneId.of( "America/Chicago" ) );
+        assertThat( fresh.getZoneId() ).isEqualTo( ZoneId.of( "Europe/Paris" ) );
+
+        new Verifications()
+        {
+            {
+                // the cached instance is never changed nor saved
+                cache.invalidate( withSameInstance( cached ) );
+                times = 0;
+
+                lap.getForUpdate( ACCOUNT_ID );
+                times = 1;
+            }
+        };
+    }
+
     @Test
     public void onMessage_ValidPubsubMessage_UninterestedDataType() throws Exception
     {
@@ -208,6 +293,39 @@ public class AccountStewardChangesSubscriptionTest
                 //noinspection ConstantConditions
                 lap.initGet( ( LocalAccountProvider.Builder ) any );
                 times = 0;
+
+                metrics.uninterested( AccountStewardChangesSubscription.NAME );
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_MetricsRecordedPerSubscription() throws Exception
+    {
+        new Expectations()
+        {
+            {
+                //noinspection ConstantConditions
+                marks.isUnchanged( withEqual( ACCOUNT_ID ), anyLong );
+                result = true;
+            }
+        };
+
+        tested.onMessage( validPubsubMessage(), "account.changes.replay" );
+        tested.onMessage( uninterestedPubsubMessage(), "account.changes.replay" );
+
+        new Verifications()
+        {
+            {
+                metrics.parse( "account.changes.replay", anyLong );
+                times = 1;
+
+                metrics.uninterested( "account.changes.replay" );
+                times = 1;
+
+                metrics.parse( AccountStewardChangesSubscription.NAME, anyLong );
+                times = 0;
             }
         };
     }
@@ -224,10 +342,257 @@ public class AccountStewardChangesSubscriptionTest
                 //noinspection ConstantConditions
                 lap.initGet( ( LocalAccountProvider.Builder ) any );
                 times = 0;
+
+                metrics.invalid( AccountStewardChangesSubscription.NAME );
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_StaleMessage_Dropped() throws Exception
+    {
+        new Expectations()
+        {
+            {
+                //noinspection ConstantConditions
+                marks.isStale( withEqual( ACCOUNT_ID ), ( Instant ) any, anyString );
+                result = true;
+            }
+        };
+
+        PubsubMessage message = validPubsubMessage().setPublishTime( "2019-05-14T10:15:30.000Z" );
+        tested.onMessage( message, "account.changes" );
+
+        new Verifications()
+        {
+            {
+                //noinspection ConstantConditions
+                lap.initGet( ( LocalAccountProvider.Builder ) any );
+                times = 0;
+
+                //noinspection ConstantConditions
+                marks.applied( anyLong, ( Instant ) any, anyString, anyLong );
+                times = 0;
+
+                //noinspection ConstantConditions
+                remoteCache.put( anyLong, anyString, ( byte[] ) any, ( Instant ) any );
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_UnchangedProjection_NoLoad() throws Exception
+    {
+        new Expectations()
+        {
+            {
+                //noinspection ConstantConditions
+                marks.isUnchanged( withEqual( ACCOUNT_ID ), anyLong );
+                result = true;
+            }
+        };
+
+        PubsubMessage message = validPubsubMessage();
+        tested.onMessage( message, "account.changes" );
+
+        new Verifications()
+        {
+            {
+                //noinspection ConstantConditions
+                lap.initGet( ( LocalAccountProvider.Builder ) any );
+                times = 0;
+
+                //noinspection ConstantConditions
+                marks.applied( withEqual( ACCOUNT_ID ), ( Instant ) any, anyString, anyLong );
+                times = 1;
+
+                // the cached remote account is refreshed even if nothing to apply locally
+                //noinspection ConstantConditions
+                remoteCache.put( withEqual( ACCOUNT_ID ),
+                        withEqual( IDENTITY_ID ),
+                        ( byte[] ) any,
+                        withEqual( AccountStewardChangesSubscription.publishTime( message ) ) );
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_ChangeApplied_Marked() throws Exception
+    {
+        LocalAccount localAccount = new LocalAccount( new LocalAccountProvider.Builder()
+                .accountId( ACCOUNT_ID )
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) );
+
+        localAccount.setZoneId( "America/Chicago" );
+
+        new Expectations( localAccount )
+        {
+            {
+                //noinspection ConstantConditions
+                lap.initGet( ( LocalAccountProvider.Builder ) any );
+                result = localAccount;
+
+                lap.getForUpdate( ACCOUNT_ID );
+                result = localAccount;
+
+                localAccount.save();
+            }
+        };
+
+        PubsubMessage message = validPubsubMessage()
+                .setPublishTime( "2019-05-14T10:15:30.000Z" )
+                .setMessageId( "4520" );
+
+        tested.onMessage( message, "account.changes" );
+
+        assertThat( localAccount.getChangePublishTime() ).isEqualTo( Instant.parse( "2019-05-14T10:15:30.000Z" ) );
+        assertThat( localAccount.getChangeMessageId() ).isEqualTo( "4520" );
+
+        new Verifications()
+        {
+            {
+                marks.applied( withEqual( ACCOUNT_ID ),
+                        withEqual( Instant.parse( "2019-05-14T10:15:30.000Z" ) ),
+                        withEqual( "4520" ),
+                        anyLong );
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void onMessages_CollapsedToLatestPerAccount() throws Exception
+    {
+        LocalAccount localAccount = new LocalAccount( new LocalAccountProvider.Builder()
+                .accountId( ACCOUNT_ID )
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) );
+
+        PubsubMessage latest = emailChangedPubsubMessage().setPublishTime( "2019-05-14T10:15:31.500Z" );
+        PubsubMessage older = validPubsubMessage().setPublishTime( "2019-05-14T10:15:30.000Z" );
+
+        new Expectations( LocalAccount.class )
+        {
+            {
+                lap.getAll( ( Collection<Long> ) any );
+                result = Collections.singletonMap( ACCOUNT_ID, localAccount );
+
+                //noinspection ConstantConditions
+                lap.getAllForUpdate( ( Collection<Long> ) any );
+                result = Collections.singletonMap( ACCOUNT_ID, localAccount );
+
+                //noinspection ConstantConditions
+                LocalAccount.saveAll( ( Collection<LocalAccount> ) any );
+            }
+        };
+
+        Set<Long> failed = tested.onMessages( Arrays.asList( latest, older ), "account.changes" );
+
+        assertThat( failed ).isEmpty();
+        assertThat( localAccount.getEmail() ).isEqualTo( EMAIL_CHANGED );
+
+        new Verifications()
+        {
+            {
+                //noinspection ConstantConditions
+                lap.initGet( ( LocalAccountProvider.Builder ) any );
+                times = 0;
+
+                cache.invalidate( localAccount );
+                times = 1;
+
+                // only the latest document is cached
+                //noinspection ConstantConditions
+                remoteCache.put( withEqual( ACCOUNT_ID ),
+                        withEqual( IDENTITY_ID ),
+                        ( byte[] ) any,
+                        withEqual( AccountStewardChangesSubscription.publishTime( latest ) ) );
+                times = 1;
             }
         };
     }
 
+    @Test
+    public void onMessages_UpdatedMeanwhile_NotSaved() throws Exception
+    {
+        LocalAccount localAccount = new LocalAccount( new LocalAccountProvider.Builder()
+                .accountId( ACCOUNT_ID )
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) );
+
+        PubsubMessage message = emailChangedPubsubMessage().setPublishTime( "2019-05-14T10:15:31.500Z" );
+
+        new Expectations( LocalAccount.class )
+        {
+            {
+                lap.getAll( ( Collection<Long> ) any );
+                result = Collections.singletonMap( ACCOUNT_ID, localAccount );
+
+                //noinspection ConstantConditions
+                lap.getAllForUpdate( ( Collection<Long> ) any );
+                result = Collections.singletonMap( ACCOUNT_ID, localAccount );
+
+                // the later message has been applied inline before the lock is acquired to save
+                //noinspection ConstantConditions
+                marks.isStale( withEqual( ACCOUNT_ID ), ( Instant ) any, anyString );
+                returns( false, true );
+            }
+        };
+
+        Set<Long> failed = tested.onMessages( Collections.singletonList( message ), "account.changes" );
+
+        assertThat( failed ).isEmpty();
+
+        new Verifications()
+        {
+            {
+                //noinspection ConstantConditions
+                LocalAccount.saveAll( ( Collection<LocalAccount> ) any );
+                times = 0;
+
+                locks.lockAll( Collections.singletonList( ACCOUNT_ID ) );
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_BatchDelivery_Buffered() throws Exception
+    {
+        System.setProperty( AccountStewardChangesSubscription.DELIVERY_PROPERTY,
+                AccountStewardChangesSubscription.DELIVERY_BATCH );
+        try
+        {
+            PubsubMessage message = validPubsubMessage();
+            tested.onMessage( message, "account.changes" );
+
+            new Verifications()
+            {
+                {
+                    buffer.buffer( message, ACCOUNT_ID, "account.changes" );
+                    times = 1;
+
+                    //noinspection ConstantConditions
+                    lap.initGet( ( LocalAccountProvider.Builder ) any );
+                    times = 0;
+
+                    // the document is cached once the buffered message is drained
+                    //noinspection ConstantConditions
+                    remoteCache.put( anyLong, anyString, ( byte[] ) any, ( Instant ) any );
+                    times = 0;
+                }
+            };
+        }
+        finally
+        {
+            System.clearProperty( AccountStewardChangesSubscription.DELIVERY_PROPERTY );
+        }
+    }
+
     private PubsubMessage uninterestedPubsubMessage() throws IOException
     {
         TopicMessage.Builder builder = incompletePubsubMessageBuilder( "Uninterested" );
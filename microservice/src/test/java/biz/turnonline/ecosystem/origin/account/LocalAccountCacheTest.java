@@ -0,0 +1,83 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link LocalAccountCache} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class LocalAccountCacheTest
+{
+    private static final String EMAIL = "my.account@turnonline.biz";
+
+    private static final String IDENTITY_ID = "34ghW4jL9";
+
+    private static final Long ACCOUNT_ID = 1233219L;
+
+    private LocalAccountCache tested;
+
+    @BeforeMethod
+    public void before()
+    {
+        tested = new LocalAccountCache();
+    }
+
+    @Test
+    public void get_ByAllKeys()
+    {
+        LocalAccount account = tested.put( localAccount() );
+
+        assertThat( tested.get( ACCOUNT_ID ) ).isEqualTo( account );
+        assertThat( tested.getByEmail( "My.Account@turnonline.biz" ) ).isEqualTo( account );
+        assertThat( tested.getByIdentityId( IDENTITY_ID ) ).isEqualTo( account );
+
+        assertThat( tested.hitCount() ).isEqualTo( 3 );
+        assertThat( tested.missCount() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void getByEmail_EmailChanged_Miss()
+    {
+        LocalAccount account = tested.put( localAccount() );
+        account.setEmail( "another.account@turnonline.biz" );
+
+        assertThat( tested.getByEmail( EMAIL ) ).isNull();
+        assertThat( tested.missCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void invalidate_AllKeysRemoved()
+    {
+        LocalAccount account = tested.put( localAccount() );
+        tested.invalidate( account );
+
+        assertThat( tested.get( ACCOUNT_ID ) ).isNull();
+        assertThat( tested.getByEmail( EMAIL ) ).isNull();
+        assertThat( tested.getByIdentityId( IDENTITY_ID ) ).isNull();
+        assertThat( tested.size() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void put_WithoutId_Ignored()
+    {
+        tested.put( new LocalAccount( new LocalAccountProvider.Builder()
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) ) );
+
+        assertThat( tested.size() ).isEqualTo( 0 );
+        assertThat( tested.getByEmail( EMAIL ) ).isNull();
+    }
+
+    private LocalAccount localAccount()
+    {
+        return new LocalAccount( new LocalAccountProvider.Builder()
+                .accountId( ACCOUNT_ID )
+                .email( EMAIL )
+                .identityId( IDENTITY_ID ) );
+    }
+}
@@ -0,0 +1,77 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link NotFoundAccountCache} unit testing against local memcache service.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class NotFoundAccountCacheTest
+{
+    private static final String EMAIL = "my.account@turnonline.biz";
+
+    private static final String IDENTITY_ID = "34ghW4jL9";
+
+    private final LocalServiceTestHelper helper = new LocalServiceTestHelper( new LocalMemcacheServiceTestConfig() );
+
+    private NotFoundAccountCache tested;
+
+    @BeforeMethod
+    public void before()
+    {
+        helper.setUp();
+        tested = new NotFoundAccountCache();
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        helper.tearDown();
+    }
+
+    @Test
+    public void isNotFound_NotRecorded()
+    {
+        assertThat( tested.isNotFound( builder( EMAIL, IDENTITY_ID ) ) ).isFalse();
+        assertThat( tested.hitCount() ).isEqualTo( 0 );
+    }
+
+    @Test
+    public void isNotFound_ByIdentityIdOrEmail()
+    {
+        tested.put( builder( EMAIL, IDENTITY_ID ) );
+
+        assertThat( tested.isNotFound( builder( "another@turnonline.biz", IDENTITY_ID ) ) ).isTrue();
+        assertThat( tested.isNotFound( builder( "My.Account@turnonline.biz", "another" ) ) ).isTrue();
+        assertThat( tested.isNotFound( builder( "another@turnonline.biz", "another" ) ) ).isFalse();
+        assertThat( tested.hitCount() ).isEqualTo( 2 );
+    }
+
+    @Test
+    public void invalidate_SharedByAllInstances()
+    {
+        NotFoundAccountCache another = new NotFoundAccountCache();
+
+        tested.put( builder( EMAIL, IDENTITY_ID ) );
+        assertThat( another.isNotFound( builder( EMAIL, IDENTITY_ID ) ) ).isTrue();
+
+        // sign-up message received by another instance
+        another.invalidate( IDENTITY_ID, EMAIL );
+
+        assertThat( tested.isNotFound( builder( EMAIL, IDENTITY_ID ) ) ).isFalse();
+        assertThat( another.isNotFound( builder( EMAIL, IDENTITY_ID ) ) ).isFalse();
+    }
+
+    private static LocalAccountProvider.Builder builder( String email, String identityId )
+    {
+        return new LocalAccountProvider.Builder().email( email ).identityId( identityId );
+    }
+}
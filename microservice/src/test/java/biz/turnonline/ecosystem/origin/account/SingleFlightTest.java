@@ -0,0 +1,174 @@
+package biz.turnonline.ecosystem.origin.account;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.testng.Assert.fail;
+
+/**
+ * {@link SingleFlight} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class SingleFlightTest
+{
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void before()
+    {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void execute_FollowerGetsLeaderResult() throws Exception
+    {
+        SingleFlight<String> tested = new SingleFlight<>( 5000 );
+        CountDownLatch started = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<String> leader = executor.submit( () -> tested.execute( "key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await( release );
+            return "leader";
+        } ) );
+        started.await( 5, TimeUnit.SECONDS );
+
+        Future<String> follower = executor.submit( () -> tested.execute( "key", () -> {
+            calls.incrementAndGet();
+            return "follower";
+        } ) );
+        waitForCoalesced( tested, 1 );
+        release.countDown();
+
+        assertThat( leader.get( 5, TimeUnit.SECONDS ) ).isEqualTo( "leader" );
+        assertThat( follower.get( 5, TimeUnit.SECONDS ) ).isEqualTo( "leader" );
+        assertThat( calls.get() ).isEqualTo( 1 );
+        assertThat( tested.executedCount() ).isEqualTo( 1L );
+        assertThat( tested.coalescedCount() ).isEqualTo( 1L );
+    }
+
+    @Test
+    public void execute_LeaderFailurePropagatedToFollower() throws Exception
+    {
+        SingleFlight<String> tested = new SingleFlight<>( 5000 );
+        CountDownLatch started = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+
+        Future<String> leader = executor.submit( () -> tested.execute( "key", () -> {
+            started.countDown();
+            await( release );
+            throw new IllegalArgumentException( "Remote account not found" );
+        } ) );
+        started.await( 5, TimeUnit.SECONDS );
+
+        Future<String> follower = executor.submit( () -> tested.execute( "key", () -> "follower" ) );
+        waitForCoalesced( tested, 1 );
+        release.countDown();
+
+        assertFailure( leader );
+        assertFailure( follower );
+
+        // the failed flight is not kept, next call executes again
+        assertThat( tested.execute( "key", () -> "next" ) ).isEqualTo( "next" );
+        assertThat( tested.executedCount() ).isEqualTo( 2L );
+    }
+
+    @Test
+    public void execute_DifferentKeysNotCoalesced() throws Exception
+    {
+        SingleFlight<String> tested = new SingleFlight<>( 5000 );
+        CountDownLatch started = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+
+        Future<String> leader = executor.submit( () -> tested.execute( "1:Wh23h9kl:my.account@turnonline.biz", () -> {
+            started.countDown();
+            await( release );
+            return "first";
+        } ) );
+        started.await( 5, TimeUnit.SECONDS );
+
+        // same email, different identity
+        String other = tested.execute( "null:Lk98h2Gp:my.account@turnonline.biz", () -> "second" );
+        release.countDown();
+
+        assertThat( other ).isEqualTo( "second" );
+        assertThat( leader.get( 5, TimeUnit.SECONDS ) ).isEqualTo( "first" );
+        assertThat( tested.coalescedCount() ).isEqualTo( 0L );
+    }
+
+    @Test
+    public void execute_FollowerWaitBounded() throws Exception
+    {
+        SingleFlight<String> tested = new SingleFlight<>( 100 );
+        CountDownLatch started = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+
+        Future<String> leader = executor.submit( () -> tested.execute( "key", () -> {
+            started.countDown();
+            await( release );
+            return "leader";
+        } ) );
+        started.await( 5, TimeUnit.SECONDS );
+
+        // the leader is stuck, the follower executes on its own
+        assertThat( tested.execute( "key", () -> "follower" ) ).isEqualTo( "follower" );
+        assertThat( tested.timedOutCount() ).isEqualTo( 1L );
+
+        release.countDown();
+        assertThat( leader.get( 5, TimeUnit.SECONDS ) ).isEqualTo( "leader" );
+    }
+
+    private static void waitForCoalesced( SingleFlight<?> tested, long count ) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( tested.coalescedCount() < count && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 5 );
+        }
+        assertThat( tested.coalescedCount() ).isEqualTo( count );
+    }
+
+    private static void await( CountDownLatch latch )
+    {
+        try
+        {
+            latch.await( 5, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertFailure( Future<String> future ) throws Exception
+    {
+        try
+        {
+            future.get( 5, TimeUnit.SECONDS );
+            fail( "IllegalArgumentException expected" );
+        }
+        catch ( ExecutionException e )
+        {
+            assertThat( e.getCause() ).isInstanceOf( IllegalArgumentException.class );
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import biz.turnonline.ecosystem.steward.model.Account;
+import com.google.common.io.ByteStreams;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link AccountView} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class AccountViewTest
+{
+    @Test
+    public void scalarsWithoutBinding() throws IOException
+    {
+        AccountView tested = new AccountView( json(), null );
+
+        assertThat( tested.getId() ).isEqualTo( 1233219L );
+        assertThat( tested.getIdentityId() ).isEqualTo( "021548554211" );
+        assertThat( tested.getCompany() ).isTrue();
+        // nested object is not a scalar
+        assertThat( tested.getString( "billingContact" ) ).isNull();
+        assertThat( tested.isBound() ).isFalse();
+    }
+
+    @Test
+    public void nestedObjectBindsWhole() throws IOException
+    {
+        AccountView tested = new AccountView( json(), null );
+
+        assertThat( tested.getBusiness() ).isNotNull();
+        assertThat( tested.isBound() ).isTrue();
+        assertThat( tested.get().getId() ).isEqualTo( 1233219L );
+    }
+
+    @Test
+    public void alreadyBound()
+    {
+        Account account = new Account().setId( 1L ).setEmail( "my.account@example.com" );
+        AccountView tested = new AccountView( null, account );
+
+        assertThat( tested.getId() ).isEqualTo( 1L );
+        assertThat( tested.getEmail() ).isEqualTo( "my.account@example.com" );
+        assertThat( tested.get() ).isSameAs( account );
+    }
+
+    private static byte[] json() throws IOException
+    {
+        String name = "/biz/turnonline/ecosystem/origin/account/account-large.json";
+        try ( InputStream stream = AccountViewTest.class.getResourceAsStream( name ) )
+        {
+            return ByteStreams.toByteArray( stream );
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link CacheGeneration} unit testing against local memcache service.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class CacheGenerationTest
+{
+    private final LocalServiceTestHelper helper = new LocalServiceTestHelper( new LocalMemcacheServiceTestConfig() );
+
+    private MemcacheService memcache;
+
+    @BeforeMethod
+    public void before()
+    {
+        helper.setUp();
+        memcache = MemcacheServiceFactory.getMemcacheService();
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        helper.tearDown();
+    }
+
+    @Test
+    public void current_InitializedOnceShared()
+    {
+        CacheGeneration first = new CacheGeneration( memcache, "Account::generation" );
+        CacheGeneration second = new CacheGeneration( memcache, "Account::generation" );
+
+        long generation = first.current();
+
+        assertThat( generation ).isGreaterThan( 0L );
+        assertThat( second.current() ).isEqualTo( generation );
+    }
+
+    @Test
+    public void bump_EffectiveRightAway()
+    {
+        CacheGeneration tested = new CacheGeneration( memcache, "Account::generation" );
+        long generation = tested.current();
+
+        long bumped = tested.bump();
+
+        assertThat( bumped ).isEqualTo( generation + 1 );
+        assertThat( tested.current() ).isEqualTo( bumped );
+    }
+
+    @Test
+    public void bump_OtherTypeUntouched()
+    {
+        CacheGeneration account = new CacheGeneration( memcache, "Account::generation" );
+        CacheGeneration invoice = new CacheGeneration( memcache, "Invoice::generation" );
+        long generation = invoice.current();
+
+        account.bump();
+
+        assertThat( new CacheGeneration( memcache, "Invoice::generation" ).current() ).isEqualTo( generation );
+    }
+}
@@ -0,0 +1,41 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link CacheMetrics} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class CacheMetricsTest
+{
+    @Test
+    public void snapshot()
+    {
+        CacheMetrics tested = new CacheMetrics();
+        tested.nearHit();
+        tested.hit( 150 );
+        tested.miss();
+        tested.parseFailure();
+        tested.memcacheError();
+        tested.serialized( 300, 2048 );
+
+        Map<String, Object> snapshot = tested.snapshot();
+
+        assertThat( snapshot.get( "nearHits" ) ).isEqualTo( 1L );
+        assertThat( snapshot.get( "hits" ) ).isEqualTo( 1L );
+        // parse failure counts as a miss too
+        assertThat( snapshot.get( "misses" ) ).isEqualTo( 2L );
+        assertThat( snapshot.get( "hitRatio" ) ).isEqualTo( 0.5 );
+        assertThat( snapshot.get( "parseFailures" ) ).isEqualTo( 1L );
+        assertThat( snapshot.get( "memcacheErrors" ) ).isEqualTo( 1L );
+
+        @SuppressWarnings( "unchecked" )
+        Map<String, Object> payload = ( Map<String, Object> ) snapshot.get( "payloadBytes" );
+        assertThat( payload.get( "max" ) ).isEqualTo( 2048L );
+    }
+}
@@ -0,0 +1,147 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import biz.turnonline.ecosystem.steward.model.Account;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link CacheValues} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class CacheValuesTest
+{
+    @Test
+    public void jsonString_Default() throws IOException
+    {
+        CacheValues tested = new CacheValues( null, CacheOptions.DEFAULT_COMPRESSION_THRESHOLD );
+
+        Object value = tested.encode( account() );
+
+        assertThat( value ).isInstanceOf( String.class );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+    }
+
+    @Test
+    public void binary_NotCompressedBelowThreshold() throws IOException
+    {
+        CacheValues tested = new CacheValues( new JsonCacheCodec(), 10000 );
+
+        byte[] value = ( byte[] ) tested.encode( account() );
+
+        assertThat( value[0] ).isEqualTo( CacheValues.MAGIC );
+        assertThat( value[1] ).isEqualTo( JsonCacheCodec.FORMAT );
+        assertThat( value[2] ).isEqualTo( ( byte ) 0 );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+    }
+
+    @Test
+    public void binary_CompressedAboveThreshold() throws IOException
+    {
+        CacheValues tested = new CacheValues( new JsonCacheCodec(), 0 );
+
+        byte[] value = ( byte[] ) tested.encode( account() );
+
+        assertThat( value[2] ).isEqualTo( CacheValues.GZIP );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+    }
+
+    @Test
+    public void decode_JsonStringReadableByBinary() throws IOException
+    {
+        CacheValues tested = new CacheValues( new JsonCacheCodec(), 0 );
+        String legacy = JacksonFactory.getDefaultInstance().toString( account() );
+
+        assertThat( tested.decode( legacy, Account.class ) ).isEqualTo( account() );
+    }
+
+    @Test
+    public void decode_BinaryReadableByDefault() throws IOException
+    {
+        byte[] value = ( byte[] ) new CacheValues( new JsonCacheCodec(), 0 ).encode( account() );
+        CacheValues tested = new CacheValues( null, CacheOptions.DEFAULT_COMPRESSION_THRESHOLD );
+
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+    }
+
+    @Test
+    public void softExpiresAt() throws IOException
+    {
+        CacheValues tested = new CacheValues( new JsonCacheCodec(), 0 );
+
+        Object value = tested.encode( account(), 1540000000000L, 0, 0 );
+
+        assertThat( CacheValues.softExpiresAt( value ) ).isEqualTo( 1540000000000L );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+        assertThat( CacheValues.softExpiresAt( tested.encode( account() ) ) ).isEqualTo( 0L );
+    }
+
+    @Test
+    public void version() throws IOException
+    {
+        CacheValues tested = new CacheValues( new JsonCacheCodec(), 0 );
+
+        Object value = tested.encode( account(), 1540000000000L, 1530000000000L, 0 );
+
+        assertThat( CacheValues.version( value ) ).isEqualTo( 1530000000000L );
+        assertThat( CacheValues.softExpiresAt( value ) ).isEqualTo( 1540000000000L );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+
+        value = tested.encode( account(), 0, 1530000000000L, 0 );
+        assertThat( CacheValues.version( value ) ).isEqualTo( 1530000000000L );
+        assertThat( CacheValues.softExpiresAt( value ) ).isEqualTo( 0L );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+    }
+
+    @Test
+    public void expiresAt() throws IOException
+    {
+        CacheValues tested = new CacheValues( new JsonCacheCodec(), 0 );
+
+        Object value = tested.encode( account(), 0, 1530000000000L, 1550000000000L );
+
+        assertThat( CacheValues.expiresAt( value ) ).isEqualTo( 1550000000000L );
+        assertThat( CacheValues.version( value ) ).isEqualTo( 1530000000000L );
+        assertThat( CacheValues.softExpiresAt( value ) ).isEqualTo( 0L );
+        assertThat( tested.decode( value, Account.class ) ).isEqualTo( account() );
+
+        assertThat( CacheValues.expiresAt( tested.encode( account() ) ) ).isEqualTo( 0L );
+    }
+
+    @Test
+    public void version_JsonString() throws IOException
+    {
+        CacheValues tested = new CacheValues( null, CacheOptions.DEFAULT_COMPRESSION_THRESHOLD );
+
+        assertThat( CacheValues.version( tested.encode( account(), 0, 1530000000000L, 0 ) ) ).isEqualTo( 0L );
+        assertThat( CacheValues.version( null ) ).isEqualTo( 0L );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void decode_UnknownFormat() throws IOException
+    {
+        CacheValues tested = new CacheValues( null, CacheOptions.DEFAULT_COMPRESSION_THRESHOLD );
+        tested.decode( new byte[]{CacheValues.MAGIC, 99, 0, '{', '}'}, Account.class );
+    }
+
+    @Test( expectedExceptions = IOException.class )
+    public void decode_UnknownHeader() throws IOException
+    {
+        CacheValues tested = new CacheValues( null, CacheOptions.DEFAULT_COMPRESSION_THRESHOLD );
+        tested.decode( new byte[]{'{', '}', ' '}, Account.class );
+    }
+
+    private static Account account()
+    {
+        return new Account()
+                .setId( 1L )
+                .setEmail( "my.account@example.com" )
+                .setIdentityId( "64HGtr6ks" )
+                .setZoneId( "Europe/Paris" )
+                .setLocale( "en" );
+    }
+}
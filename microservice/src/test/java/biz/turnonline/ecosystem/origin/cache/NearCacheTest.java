@@ -0,0 +1,98 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.common.base.Ticker;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link NearCache} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class NearCacheTest
+{
+    private final AtomicLong nanos = new AtomicLong();
+
+    private NearCache<String> tested;
+
+    @BeforeMethod
+    public void before()
+    {
+        nanos.set( 0 );
+        tested = new NearCache<>( 2, 60, new Ticker()
+        {
+            @Override
+            public long read()
+            {
+                return nanos.get();
+            }
+        } );
+    }
+
+    @Test
+    public void get_ExpiresAfterTimeToLive()
+    {
+        tested.put( "key", "value", null );
+
+        advance( 59 );
+        assertThat( tested.get( "key" ) ).isEqualTo( "value" );
+
+        advance( 1 );
+        assertThat( tested.get( "key" ) ).isNull();
+    }
+
+    @Test
+    public void get_ShorterExpirationWins()
+    {
+        tested.put( "key", "value", TimeUnit.SECONDS.toMillis( 10 ) );
+
+        advance( 9 );
+        assertThat( tested.get( "key" ) ).isEqualTo( "value" );
+
+        advance( 1 );
+        assertThat( tested.get( "key" ) ).isNull();
+    }
+
+    @Test
+    public void put_ZeroExpirationEvicts()
+    {
+        tested.put( "key", "value", null );
+        tested.put( "key", "value", 0L );
+
+        assertThat( tested.get( "key" ) ).isNull();
+    }
+
+    @Test
+    public void put_SizeBounded()
+    {
+        tested.put( "a", "1", null );
+        tested.put( "b", "2", null );
+        tested.put( "c", "3", null );
+
+        assertThat( tested.size() ).isAtMost( 2L );
+    }
+
+    @Test
+    public void invalidate()
+    {
+        tested.put( "a", "1", null );
+        tested.put( "b", "2", null );
+
+        tested.invalidate( "a" );
+        assertThat( tested.get( "a" ) ).isNull();
+        assertThat( tested.get( "b" ) ).isEqualTo( "2" );
+
+        tested.invalidateAll();
+        assertThat( tested.get( "b" ) ).isNull();
+    }
+
+    private void advance( int seconds )
+    {
+        nanos.addAndGet( TimeUnit.SECONDS.toNanos( seconds ) );
+    }
+}
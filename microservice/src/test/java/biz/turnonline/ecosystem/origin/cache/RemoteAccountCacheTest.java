@@ -0,0 +1,201 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import biz.turnonline.ecosystem.steward.model.Account;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.ctoolkit.restapi.client.Identifier;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link RemoteAccountCache} unit testing against local memcache service.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class RemoteAccountCacheTest
+{
+    private final LocalServiceTestHelper helper = new LocalServiceTestHelper( new LocalMemcacheServiceTestConfig() );
+
+    private RemoteAccountCache tested;
+
+    @BeforeMethod
+    public void before()
+    {
+        helper.setUp();
+        tested = new RemoteAccountCache();
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        helper.tearDown();
+    }
+
+    @Test
+    public void persistAndGet()
+    {
+        Identifier identifier = new Identifier( "my.account@example.com" );
+        tested.persist( account( 1L ), identifier, null, null, null );
+
+        Account cached = tested.get( identifier, null, null );
+        assertThat( cached ).isEqualTo( account( 1L ) );
+
+        // near cached instance is not shared with the caller
+        cached.setEmail( "changed@example.com" );
+        assertThat( tested.get( identifier, null, null ) ).isEqualTo( account( 1L ) );
+    }
+
+    @Test
+    public void getAll_PartialResult()
+    {
+        Identifier first = new Identifier( "first@example.com" );
+        Identifier second = new Identifier( "second@example.com" );
+        Identifier third = new Identifier( "third@example.com" );
+
+        tested.persistAll( ImmutableMap.of( first, account( 1L ), third, account( 3L ) ), null );
+        tested.invalidateNearCache();
+
+        CacheBatch<Account> batch = tested.getAll( ImmutableList.of( first, second, third ) );
+
+        assertThat( batch.isComplete() ).isFalse();
+        assertThat( batch.getMissing() ).containsExactly( second );
+        assertThat( batch.getFound() ).containsExactly( first, account( 1L ), third, account( 3L ) ).inOrder();
+    }
+
+    @Test
+    public void put_JsonUnderAccountAndIdentityId() throws IOException
+    {
+        Identifier identifier = new Identifier( "1" );
+        tested.persist( account( 1L ).setLocale( "sk" ), identifier, null, null, null );
+
+        byte[] json = JacksonFactory.getDefaultInstance().toByteArray( account( 1L ) );
+        tested.put( 1L, "64HGtr6ks", json, Instant.now() );
+
+        assertThat( tested.get( identifier, null, null ) ).isEqualTo( account( 1L ) );
+        assertThat( tested.get( new Identifier( "64HGtr6ks" ), null, null ) ).isEqualTo( account( 1L ) );
+    }
+
+    @Test
+    public void put_OlderMessageDoesNotOverwrite() throws IOException
+    {
+        Identifier identifier = new Identifier( "1" );
+        Instant publishTime = Instant.now();
+
+        tested.put( 1L, null, JacksonFactory.getDefaultInstance().toByteArray( account( 1L ) ), publishTime );
+        tested.put( 1L, null, JacksonFactory.getDefaultInstance().toByteArray( account( 1L ).setLocale( "sk" ) ),
+                publishTime.minusSeconds( 1 ) );
+        tested.invalidateNearCache();
+
+        assertThat( tested.get( identifier, null, null ) ).isEqualTo( account( 1L ) );
+        assertThat( tested.getMetrics().snapshot().get( "outdatedWrites" ) ).isEqualTo( 1L );
+    }
+
+    @Test
+    public void persist_FetchedBeforeMessageDoesNotOverwrite() throws IOException
+    {
+        Identifier identifier = new Identifier( "1" );
+
+        tested.put( 1L, null, JacksonFactory.getDefaultInstance().toByteArray( account( 1L ) ), Instant.now() );
+        // the account retrieved by the remote call started before the message has been processed
+        tested.persist( account( 1L ).setLocale( "sk" ), identifier, null, null, null );
+        tested.invalidateNearCache();
+
+        assertThat( tested.get( identifier, null, null ) ).isEqualTo( account( 1L ) );
+    }
+
+    @Test
+    public void put_JsonFormat_Evicted() throws IOException
+    {
+        tested = json();
+        Identifier identifier = new Identifier( "1" );
+        tested.persist( account( 1L ).setLocale( "sk" ), identifier, null, null, null );
+
+        tested.put( 1L, null, JacksonFactory.getDefaultInstance().toByteArray( account( 1L ) ), Instant.now() );
+        assertThat( tested.get( identifier, null, null ) ).isNull();
+
+        // the concurrent remote call might have retrieved the account before the change
+        tested.persist( account( 1L ).setLocale( "sk" ), identifier, null, null, null );
+        tested.invalidateNearCache();
+        assertThat( tested.get( identifier, null, null ) ).isNull();
+    }
+
+    @Test
+    public void getView_NotBoundOnMemcacheHit() throws IOException
+    {
+        Identifier identifier = new Identifier( "1" );
+        tested.put( 1L, null, JacksonFactory.getDefaultInstance().toByteArray( account( 1L ) ), Instant.now() );
+
+        AccountView view = tested.getView( identifier );
+
+        assertThat( view.getEmail() ).isEqualTo( "account1@example.com" );
+        assertThat( view.isBound() ).isFalse();
+        assertThat( view.get() ).isEqualTo( account( 1L ) );
+    }
+
+    @Test
+    public void get_NearCachedNoLongerThanMemcache() throws InterruptedException
+    {
+        Identifier identifier = new Identifier( "1" );
+        tested.persist( account( 1L ), identifier, null, null, 1000L );
+
+        // read from memcache, near cached for the remaining lifetime of the memcache value
+        tested.invalidateNearCache();
+        assertThat( tested.get( identifier, null, null ) ).isEqualTo( account( 1L ) );
+        assertThat( tested.nearCacheSize() ).isEqualTo( 1L );
+
+        Thread.sleep( 1100 );
+        assertThat( tested.get( identifier, null, null ) ).isNull();
+    }
+
+    @Test
+    public void invalidateAll()
+    {
+        Identifier identifier = new Identifier( "my.account@example.com" );
+        tested.persist( account( 1L ), identifier, null, null, null );
+
+        tested.invalidateAll();
+
+        assertThat( tested.get( identifier, null, null ) ).isNull();
+    }
+
+    @Test
+    public void invalidate()
+    {
+        Identifier identifier = new Identifier( "my.account@example.com" );
+        tested.persist( account( 1L ), identifier, null, null, null );
+
+        tested.invalidate( identifier );
+
+        assertThat( tested.get( identifier, null, null ) ).isNull();
+    }
+
+    private static RemoteAccountCache json()
+    {
+        System.setProperty( RemoteAccountCache.FORMAT_PROPERTY, RemoteAccountCache.FORMAT_JSON );
+        try
+        {
+            return new RemoteAccountCache();
+        }
+        finally
+        {
+            System.clearProperty( RemoteAccountCache.FORMAT_PROPERTY );
+        }
+    }
+
+    private static Account account( Long id )
+    {
+        return new Account()
+                .setId( id )
+                .setEmail( "account" + id + "@example.com" )
+                .setZoneId( "Europe/Paris" );
+    }
+}
@@ -0,0 +1,120 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import com.google.common.collect.Range;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link SoftExpiry} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class SoftExpiryTest
+{
+    @Test
+    public void expiresAt_CappedByHardExpiration()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 0, 3600000 );
+
+        assertThat( tested.expiresAt( 1000, null ) ).isEqualTo( 61000L );
+        assertThat( tested.expiresAt( 1000, 30000L ) ).isEqualTo( 31000L );
+
+        tested = new SoftExpiry( 60000, 0, 20000 );
+        assertThat( tested.expiresAt( 1000, null ) ).isEqualTo( 21000L );
+    }
+
+    @Test
+    public void check_NoSoftExpiry()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 500, 3600000 );
+
+        assertThat( tested.check( 0, 100000, 0.5 ) ).isEqualTo( SoftExpiry.State.FRESH );
+    }
+
+    @Test
+    public void check_Expired()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 500, 3600000 );
+
+        assertThat( tested.check( 61000, 61000, 1.0 ) ).isEqualTo( SoftExpiry.State.EXPIRED );
+    }
+
+    @Test
+    public void check_EarlyRefreshProbability()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 500, 3600000 );
+
+        // far from the soft expiration the random number must be extremely small
+        assertThat( tested.check( 61000, 10000, 0.5 ) ).isEqualTo( SoftExpiry.State.FRESH );
+        // 500 ms before, ln( 0.5 ) * 500 ~ -347 ms is not enough, ln( 0.3 ) * 500 ~ -602 ms is
+        assertThat( tested.check( 61000, 60500, 0.5 ) ).isEqualTo( SoftExpiry.State.FRESH );
+        assertThat( tested.check( 61000, 60500, 0.3 ) ).isEqualTo( SoftExpiry.State.EARLY );
+    }
+
+    @Test
+    public void check_EarlyRefreshProbabilityRaisesExponentially()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 500, 3600000 );
+        Random random = new Random( 42 );
+
+        // the probability of early refresh is e^( -remaining / earlyMillis )
+        assertThat( earlyRatio( tested, 0, random ) ).isWithin( 0.02 ).of( 1.0 );
+        assertThat( earlyRatio( tested, 500, random ) ).isWithin( 0.02 ).of( Math.exp( -1 ) );
+        assertThat( earlyRatio( tested, 1000, random ) ).isWithin( 0.02 ).of( Math.exp( -2 ) );
+        assertThat( earlyRatio( tested, 2500, random ) ).isWithin( 0.01 ).of( Math.exp( -5 ) );
+        assertThat( earlyRatio( tested, 10000, random ) ).isEqualTo( 0.0 );
+    }
+
+    @Test
+    public void check_EarlyRefreshSpread()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 500, 3600000 );
+        Random random = new Random( 42 );
+        long softExpiresAt = 61000;
+
+        // the hot value read every 10 ms by many instances, the time of the first early refresh per instance
+        long[] remaining = new long[1000];
+        for ( int instance = 0; instance < remaining.length; instance++ )
+        {
+            long now = softExpiresAt - 5000;
+            while ( tested.check( softExpiresAt, now, 1 - random.nextDouble() ) == SoftExpiry.State.FRESH )
+            {
+                now += 10;
+            }
+            remaining[instance] = softExpiresAt - now;
+        }
+        Arrays.sort( remaining );
+
+        // refreshes are spread before the soft expiration instead of a stampede at the very moment
+        assertThat( remaining[0] ).isAtLeast( 0L );
+        assertThat( remaining[remaining.length / 2] ).isIn( Range.closed( 1000L, 3000L ) );
+        assertThat( remaining[remaining.length - 1] - remaining[0] ).isAtLeast( 1000L );
+    }
+
+    @Test
+    public void check_EarlyRefreshOff()
+    {
+        SoftExpiry tested = new SoftExpiry( 60000, 0, 3600000 );
+
+        assertThat( tested.check( 61000, 60999, 0.0001 ) ).isEqualTo( SoftExpiry.State.FRESH );
+    }
+
+    private static double earlyRatio( SoftExpiry tested, long remaining, Random random )
+    {
+        int samples = 10000;
+        int early = 0;
+        for ( int index = 0; index < samples; index++ )
+        {
+            // random from the interval (0, 1]
+            if ( tested.check( 61000, 61000 - remaining, 1 - random.nextDouble() ) == SoftExpiry.State.EARLY )
+            {
+                early++;
+            }
+        }
+        return ( double ) early / samples;
+    }
+}
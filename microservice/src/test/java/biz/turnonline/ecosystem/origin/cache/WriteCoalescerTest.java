@@ -0,0 +1,45 @@
+package biz.turnonline.ecosystem.origin.cache;
+
+import org.testng.annotations.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link WriteCoalescer} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class WriteCoalescerTest
+{
+    @Test
+    public void shouldWrite_SameValueCoalesced()
+    {
+        WriteCoalescer tested = new WriteCoalescer( 60000 );
+
+        assertThat( tested.shouldWrite( "key", "{\"id\":1}" ) ).isTrue();
+        assertThat( tested.shouldWrite( "key", "{\"id\":1}" ) ).isFalse();
+        assertThat( tested.shouldWrite( "other", "{\"id\":1}" ) ).isTrue();
+        assertThat( tested.coalescedCount() ).isEqualTo( 1L );
+    }
+
+    @Test
+    public void shouldWrite_ChangedValueWritten()
+    {
+        WriteCoalescer tested = new WriteCoalescer( 60000 );
+
+        assertThat( tested.shouldWrite( "key", new byte[]{1, 2} ) ).isTrue();
+        assertThat( tested.shouldWrite( "key", new byte[]{1, 3} ) ).isTrue();
+        assertThat( tested.shouldWrite( "key", new byte[]{1, 3} ) ).isFalse();
+    }
+
+    @Test
+    public void forget()
+    {
+        WriteCoalescer tested = new WriteCoalescer( 60000 );
+        tested.shouldWrite( "key", "value" );
+
+        tested.forget( "key" );
+
+        assertThat( tested.shouldWrite( "key", "value" ) ).isTrue();
+    }
+}
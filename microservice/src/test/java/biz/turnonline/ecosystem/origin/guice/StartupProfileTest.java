@@ -0,0 +1,84 @@
+package biz.turnonline.ecosystem.origin.guice;
+
+import biz.turnonline.ecosystem.origin.stats.StatsReporter;
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import org.testng.annotations.Test;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link StartupProfile} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class StartupProfileTest
+{
+    @Test
+    @SuppressWarnings( "unchecked" )
+    public void createInjector_EagerSingletonProfiled()
+    {
+        StartupProfile tested = new StartupProfile();
+        tested.createInjector( new SlowModule() );
+
+        Map<String, Object> report = tested.report();
+
+        assertThat( ( Map<String, Long> ) report.get( "moduleConfigurationMillis" ) ).containsKey( "SlowModule" );
+        assertThat( ( Map<String, Long> ) report.get( "slowestProvisionMillis" ) )
+                .containsKey( Key.get( SlowSingleton.class ).toString() );
+    }
+
+    @Test
+    public void createInjector_OnlySingletonsListened()
+    {
+        Injector injector = new StartupProfile().createInjector( new SlowModule() );
+        StartupProfile.Singletons matcher = new StartupProfile.Singletons();
+
+        assertThat( matcher.matches( injector.getBinding( SlowSingleton.class ) ) ).isTrue();
+        assertThat( matcher.matches( injector.getBinding( PerRequest.class ) ) ).isFalse();
+    }
+
+    @Test
+    public void createInjector_ReporterBound()
+    {
+        StartupProfile tested = new StartupProfile();
+        Injector injector = tested.createInjector( new SlowModule() );
+
+        Set<StatsReporter> reporters = injector.getInstance( Key.get( new TypeLiteral<Set<StatsReporter>>()
+        {
+        } ) );
+
+        assertThat( reporters ).containsExactly( tested );
+        assertThat( tested.name() ).isEqualTo( "startup" );
+    }
+
+    private static class SlowModule
+            extends AbstractModule
+    {
+        @Override
+        protected void configure()
+        {
+            bind( SlowSingleton.class ).asEagerSingleton();
+            bind( PerRequest.class );
+        }
+    }
+
+    @Singleton
+    static class SlowSingleton
+    {
+        SlowSingleton() throws InterruptedException
+        {
+            Thread.sleep( 20 );
+        }
+    }
+
+    static class PerRequest
+    {
+    }
+}
@@ -0,0 +1,98 @@
+package biz.turnonline.ecosystem.origin.guice;
+
+import biz.turnonline.ecosystem.origin.service.LocalAccountProvider;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Tested;
+import mockit.Verifications;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link WarmupServlet} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class WarmupServletTest
+{
+    @Tested
+    private WarmupServlet tested;
+
+    @Injectable
+    private Injector injector;
+
+    @Injectable
+    private LocalAccountProvider lap;
+
+    @Mocked
+    private Binding<Object> binding;
+
+    @Mocked
+    private HttpServletRequest request;
+
+    @Mocked
+    private HttpServletResponse response;
+
+    @Test
+    public void doGet_OnlyHotBindingsInitialized() throws IOException
+    {
+        new Expectations()
+        {
+            {
+                injector.getExistingBinding( ( Key<?> ) any );
+                result = binding;
+            }
+        };
+
+        tested.doGet( request, response );
+
+        new Verifications()
+        {
+            {
+                List<Key<?>> keys = new ArrayList<>();
+                injector.getExistingBinding( withCapture( keys ) );
+                assertThat( keys ).containsAllIn( WarmupServlet.HOT_BINDINGS );
+
+                // not all of the singletons
+                injector.getAllBindings();
+                times = 0;
+
+                lap.preload( WarmupServlet.PRELOAD_LIMIT );
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void doGet_PreloadFailed_WarmupFinished() throws IOException
+    {
+        new Expectations()
+        {
+            {
+                lap.preload( anyInt );
+                result = new IllegalStateException( "Datastore not available" );
+            }
+        };
+
+        tested.doGet( request, response );
+
+        new Verifications()
+        {
+            {
+                response.getWriter();
+                times = 1;
+            }
+        };
+    }
+}
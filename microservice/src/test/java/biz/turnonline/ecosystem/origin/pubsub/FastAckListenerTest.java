@@ -0,0 +1,122 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import mockit.Injectable;
+import mockit.Verifications;
+import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.ctoolkit.restapi.client.pubsub.PubsubCommand.DATA_TYPE;
+
+/**
+ * {@link FastAckListener} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class FastAckListenerTest
+{
+    private static final String NAME = "a.changes";
+
+    @Injectable
+    private PubsubMessageListener delegate;
+
+    @Injectable
+    private SubscriptionHandoff handoff;
+
+    private FastAckListener tested;
+
+    @BeforeMethod
+    public void before()
+    {
+        tested = new FastAckListener( NAME, delegate, () -> handoff, DATA_TYPE );
+    }
+
+    @AfterMethod
+    public void after()
+    {
+        System.clearProperty( NAME + ".delivery" );
+    }
+
+    @Test
+    public void onMessage_Default_Delegated() throws Exception
+    {
+        PubsubMessage message = message();
+        tested.onMessage( message, NAME );
+
+        new Verifications()
+        {
+            {
+                delegate.onMessage( message, NAME );
+                times = 1;
+
+                handoff.handoff( ( PubsubMessage ) any, anyString );
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_FastAck_HandedOff() throws Exception
+    {
+        System.setProperty( NAME + ".delivery", FastAckListener.FAST_ACK );
+
+        PubsubMessage message = message();
+        tested.onMessage( message, NAME );
+
+        new Verifications()
+        {
+            {
+                handoff.handoff( message, NAME );
+                times = 1;
+
+                delegate.onMessage( ( PubsubMessage ) any, anyString );
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void onMessage_FastAck_InvalidDropped() throws Exception
+    {
+        System.setProperty( NAME + ".delivery", FastAckListener.FAST_ACK );
+
+        tested.onMessage( new PubsubMessage().setAttributes( Collections.emptyMap() ), NAME );
+
+        new Verifications()
+        {
+            {
+                handoff.handoff( ( PubsubMessage ) any, anyString );
+                times = 0;
+
+                delegate.onMessage( ( PubsubMessage ) any, anyString );
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void deliver_Delegated() throws Exception
+    {
+        PubsubMessage message = message();
+        tested.deliver( message );
+
+        new Verifications()
+        {
+            {
+                delegate.onMessage( message, NAME );
+                times = 1;
+            }
+        };
+    }
+
+    private PubsubMessage message()
+    {
+        return new PubsubMessage()
+                .setMessageId( "1" )
+                .setAttributes( Collections.singletonMap( DATA_TYPE, "Account" ) );
+    }
+}
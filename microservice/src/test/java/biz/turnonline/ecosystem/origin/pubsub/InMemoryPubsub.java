@@ -0,0 +1,130 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.api.services.pubsub.model.ReceivedMessage;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The local in-memory Pub/Sub stand-in of the single subscription. Pulled messages are outstanding
+ * until acknowledged or released, released messages are redelivered on the next pull.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+class InMemoryPubsub
+        implements PubsubPullClient
+{
+    private final Map<String, PubsubMessage> available = new LinkedHashMap<>();
+
+    private final Map<String, PubsubMessage> outstanding = new LinkedHashMap<>();
+
+    private final List<String> acknowledged = new ArrayList<>();
+
+    private final List<Integer> ackBatches = new ArrayList<>();
+
+    private final List<String> extended = new ArrayList<>();
+
+    private int maxOutstanding;
+
+    private int sequence;
+
+    /**
+     * Publishes the message with given payload.
+     *
+     * @param data the message payload
+     * @return the message ID
+     */
+    String publish( @Nonnull String data )
+    {
+        String id = String.valueOf( ++sequence );
+        PubsubMessage message = new PubsubMessage()
+                .setMessageId( id )
+                .setData( Base64.getEncoder().encodeToString( data.getBytes( StandardCharsets.UTF_8 ) ) );
+
+        available.put( id, message );
+        return id;
+    }
+
+    @Override
+    public synchronized List<ReceivedMessage> pull( @Nonnull String subscription, int maxMessages )
+    {
+        List<ReceivedMessage> received = new ArrayList<>();
+        for ( String id : new ArrayList<>( available.keySet() ) )
+        {
+            if ( received.size() >= maxMessages )
+            {
+                break;
+            }
+
+            PubsubMessage message = available.remove( id );
+            outstanding.put( id, message );
+            received.add( new ReceivedMessage().setAckId( id ).setMessage( message ) );
+        }
+
+        maxOutstanding = Math.max( maxOutstanding, outstanding.size() );
+        return received;
+    }
+
+    @Override
+    public synchronized void acknowledge( @Nonnull String subscription, @Nonnull List<String> ackIds )
+    {
+        ackBatches.add( ackIds.size() );
+        for ( String ackId : ackIds )
+        {
+            if ( outstanding.remove( ackId ) != null )
+            {
+                acknowledged.add( ackId );
+            }
+        }
+    }
+
+    @Override
+    public synchronized void release( @Nonnull String subscription, @Nonnull List<String> ackIds )
+    {
+        for ( String ackId : ackIds )
+        {
+            PubsubMessage message = outstanding.remove( ackId );
+            if ( message != null )
+            {
+                available.put( ackId, message );
+            }
+        }
+    }
+
+    @Override
+    public synchronized void extend( @Nonnull String subscription, @Nonnull List<String> ackIds, int ackDeadlineSeconds )
+    {
+        extended.addAll( ackIds );
+    }
+
+    List<String> acknowledged()
+    {
+        return acknowledged;
+    }
+
+    List<Integer> ackBatches()
+    {
+        return ackBatches;
+    }
+
+    List<String> extended()
+    {
+        return extended;
+    }
+
+    int maxOutstanding()
+    {
+        return maxOutstanding;
+    }
+
+    int available()
+    {
+        return available.size();
+    }
+}
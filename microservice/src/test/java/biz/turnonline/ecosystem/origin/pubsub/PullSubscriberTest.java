@@ -0,0 +1,174 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.services.pubsub.model.PubsubMessage;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.ctoolkit.restapi.client.pubsub.PubsubMessageListener;
+import org.testng.annotations.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link PullSubscriber} unit testing against {@link InMemoryPubsub}.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class PullSubscriberTest
+{
+    private static final String NAME = "a.changes";
+
+    private static final long BUDGET = 10_000;
+
+    @Test
+    public void run_AllAcknowledgedInBatches() throws IOException
+    {
+        InMemoryPubsub pubsub = new InMemoryPubsub();
+        for ( int index = 0; index < 7; index++ )
+        {
+            pubsub.publish( "message " + index );
+        }
+
+        Recording listener = new Recording( null );
+        PullSubscriber tested = subscriber( listener, pubsub, new PullSubscriber.Settings( 3, 1024, 2, 10 ) );
+
+        int acknowledged = tested.run( NAME, BUDGET );
+
+        assertThat( acknowledged ).isEqualTo( 7 );
+        assertThat( listener.received ).hasSize( 7 );
+        assertThat( pubsub.available() ).isEqualTo( 0 );
+        assertThat( pubsub.maxOutstanding() ).isAtMost( 3 );
+        assertThat( pubsub.ackBatches() ).containsExactly( 2, 1, 2, 1, 1 ).inOrder();
+    }
+
+    @Test
+    public void run_MaxBytesExceeded_Released() throws IOException
+    {
+        InMemoryPubsub pubsub = new InMemoryPubsub();
+        pubsub.publish( Strings.repeat( "a", 60 ) );
+        pubsub.publish( Strings.repeat( "b", 60 ) );
+        pubsub.publish( Strings.repeat( "c", 60 ) );
+
+        Recording listener = new Recording( null );
+        // base64 of 60 bytes is 80 chars, only single message fits
+        PullSubscriber tested = subscriber( listener, pubsub, new PullSubscriber.Settings( 10, 100, 10, 10 ) );
+
+        int acknowledged = tested.run( NAME, BUDGET );
+
+        // released messages are redelivered on the next pull within the same run
+        assertThat( acknowledged ).isEqualTo( 3 );
+        assertThat( listener.received ).containsExactly( "1", "2", "3" ).inOrder();
+    }
+
+    @Test
+    public void run_ProcessingFailed_Released() throws IOException
+    {
+        InMemoryPubsub pubsub = new InMemoryPubsub();
+        pubsub.publish( "first" );
+        String failing = pubsub.publish( "second" );
+
+        Recording listener = new Recording( failing );
+        PullSubscriber tested = subscriber( listener, pubsub, new PullSubscriber.Settings( 10, 1024, 10, 10 ) );
+
+        // the run ends once none of the pulled messages could be processed
+        int acknowledged = tested.run( NAME, BUDGET );
+
+        assertThat( acknowledged ).isEqualTo( 1 );
+        assertThat( pubsub.acknowledged() ).containsExactly( "1" );
+        assertThat( pubsub.available() ).isEqualTo( 1 );
+    }
+
+    @Test
+    public void run_SlowProcessing_DeadlineExtended() throws IOException
+    {
+        InMemoryPubsub pubsub = new InMemoryPubsub();
+        pubsub.publish( "first" );
+        pubsub.publish( "second" );
+        pubsub.publish( "third" );
+
+        Recording listener = new Recording( null, 300 );
+        PullSubscriber tested = subscriber( listener, pubsub, new PullSubscriber.Settings( 10, 1024, 10, 1 ) );
+
+        int acknowledged = tested.run( NAME, BUDGET );
+
+        // half of the 1 second deadline elapses before the third message
+        assertThat( acknowledged ).isEqualTo( 3 );
+        assertThat( pubsub.extended() ).containsExactly( "3" );
+        assertThat( pubsub.ackBatches() ).containsExactly( 2, 1 ).inOrder();
+    }
+
+    @Test
+    public void run_BudgetExhausted_RestReleased() throws IOException
+    {
+        InMemoryPubsub pubsub = new InMemoryPubsub();
+        for ( int index = 0; index < 5; index++ )
+        {
+            pubsub.publish( "message " + index );
+        }
+
+        Recording listener = new Recording( null, 50 );
+        PullSubscriber tested = subscriber( listener, pubsub, new PullSubscriber.Settings( 10, 1024, 10, 10 ) );
+
+        int acknowledged = tested.run( NAME, 80 );
+
+        assertThat( acknowledged ).isEqualTo( 2 );
+        assertThat( pubsub.available() ).isEqualTo( 3 );
+    }
+
+    @Test( expectedExceptions = IllegalArgumentException.class )
+    public void run_UnknownSubscription() throws IOException
+    {
+        subscriber( new Recording( null ), new InMemoryPubsub(), new PullSubscriber.Settings( 1, 1, 1, 10 ) )
+                .run( "unknown", BUDGET );
+    }
+
+    private PullSubscriber subscriber( PubsubMessageListener listener,
+                                       PubsubPullClient client,
+                                       PullSubscriber.Settings settings )
+    {
+        return new PullSubscriber( Collections.singletonMap( NAME, listener ), client, settings );
+    }
+
+    private static class Recording
+            implements PubsubMessageListener
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String failing;
+
+        private final long processingMillis;
+
+        private final List<String> received = new ArrayList<>();
+
+        Recording( String failing )
+        {
+            this( failing, 0 );
+        }
+
+        Recording( String failing, long processingMillis )
+        {
+            this.failing = failing;
+            this.processingMillis = processingMillis;
+        }
+
+        @Override
+        public void onMessage( @Nonnull PubsubMessage message, @Nonnull String subscription )
+        {
+            if ( message.getMessageId().equals( failing ) )
+            {
+                throw new IllegalStateException( "Processing failed" );
+            }
+            if ( processingMillis > 0 )
+            {
+                Uninterruptibles.sleepUninterruptibly( processingMillis, TimeUnit.MILLISECONDS );
+            }
+            received.add( message.getMessageId() );
+        }
+    }
+}
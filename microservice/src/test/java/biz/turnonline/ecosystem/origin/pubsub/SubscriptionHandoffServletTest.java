@@ -0,0 +1,141 @@
+package biz.turnonline.ecosystem.origin.pubsub;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.pubsub.model.PubsubMessage;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.Mocked;
+import mockit.Verifications;
+import org.testng.annotations.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SubscriptionHandoffServlet} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class SubscriptionHandoffServletTest
+{
+    private static final String NAME = "a.changes";
+
+    @Injectable
+    private SubscriptionHandoff handoff;
+
+    @Mocked
+    private FastAckListener listener;
+
+    @Mocked
+    private HttpServletRequest request;
+
+    @Mocked
+    private HttpServletResponse response;
+
+    @Test
+    public void doPost_Failed_Retried() throws Exception
+    {
+        expectFailing( System.currentTimeMillis() - TimeUnit.HOURS.toMillis( 1 ) );
+
+        tested().doPost( request, response );
+
+        new Verifications()
+        {
+            {
+                response.setStatus( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+                times = 1;
+
+                handoff.deadLettered();
+                times = 0;
+            }
+        };
+    }
+
+    @Test
+    public void doPost_FailedForDay_DeadLettered() throws Exception
+    {
+        expectFailing( System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis( SubscriptionHandoffServlet.DEAD_LETTER_HOURS ) );
+
+        tested().doPost( request, response );
+
+        new Verifications()
+        {
+            {
+                response.setStatus( HttpServletResponse.SC_OK );
+                times = 1;
+
+                handoff.deadLettered();
+                times = 1;
+            }
+        };
+    }
+
+    private SubscriptionHandoffServlet tested()
+    {
+        return new SubscriptionHandoffServlet( Collections.singletonMap( NAME, listener ), handoff );
+    }
+
+    private void expectFailing( long enqueued ) throws Exception
+    {
+        byte[] payload = JacksonFactory.getDefaultInstance()
+                .toByteArray( new PubsubMessage().setMessageId( "1" ).setData( "e30=" ) );
+
+        new Expectations()
+        {
+            {
+                request.getParameter( SubscriptionHandoffServlet.SUBSCRIPTION );
+                result = NAME;
+
+                request.getInputStream();
+                result = new PayloadInputStream( payload );
+
+                request.getHeader( SubscriptionHandoff.ENQUEUED_HEADER );
+                result = String.valueOf( enqueued );
+
+                listener.deliver( ( PubsubMessage ) any );
+                result = new IOException( "Processing has failed" );
+            }
+        };
+    }
+
+    private static class PayloadInputStream
+            extends ServletInputStream
+    {
+        private final ByteArrayInputStream input;
+
+        PayloadInputStream( byte[] payload )
+        {
+            this.input = new ByteArrayInputStream( payload );
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return input.available() == 0;
+        }
+
+        @Override
+        public boolean isReady()
+        {
+            return true;
+        }
+
+        @Override
+        public void setReadListener( ReadListener readListener )
+        {
+        }
+
+        @Override
+        public int read()
+        {
+            return input.read();
+        }
+    }
+}
@@ -1,16 +1,26 @@
 package biz.turnonline.ecosystem.origin.service;
 
+import biz.turnonline.ecosystem.origin.account.AccountEmailLookup;
 import biz.turnonline.ecosystem.origin.account.LocalAccount;
+import biz.turnonline.ecosystem.origin.account.LocalAccountCache;
 import biz.turnonline.ecosystem.steward.model.Account;
+import com.googlecode.objectify.Key;
 import mockit.Mock;
 import mockit.MockUp;
+import org.ctoolkit.restapi.client.NotFoundException;
 import org.ctoolkit.restapi.client.RestFacade;
 import org.testng.annotations.Test;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static com.google.common.truth.Truth.assertWithMessage;
+import static org.testng.Assert.fail;
+import static com.googlecode.objectify.ObjectifyService.ofy;
 
 /**
  * {@link LocalAccount} unit testing against local emulated datastore.
@@ -23,6 +33,9 @@ public class LocalAccountProviderDbTest
     @Inject
     private LocalAccountProvider lap;
 
+    @Inject
+    private LocalAccountCache cache;
+
     @Test
     public void initGet_SaveOk()
     {
@@ -64,4 +77,223 @@ public class LocalAccountProviderDbTest
                 .that( la.getIdentityId() )
                 .isEqualTo( identityId );
     }
+
+    @Test
+    public void get_ByEmailLookup()
+    {
+        long accountId = 986L;
+        String email = "another.account@turnonline.biz";
+        String identityId = "Lk98h2Gp";
+
+        new MockUp<LocalAccount>()
+        {
+            @Mock
+            public Account getAccount( @Nonnull RestFacade facade )
+            {
+                return new Account()
+                        .setId( accountId )
+                        .setEmail( email )
+                        .setIdentityId( identityId );
+            }
+        };
+
+        lap.initGet( new LocalAccountProvider.Builder()
+                .email( email )
+                .identityId( identityId ) );
+
+        cache.invalidateAll();
+        LocalAccount la = lap.get( "Another.Account@turnonline.biz" );
+
+        assertWithMessage( "LocalAccount retrieved by email" )
+                .that( la )
+                .isNotNull();
+
+        assertWithMessage( "LocalAccount ID" )
+                .that( la.getId() )
+                .isEqualTo( accountId );
+    }
+
+    @Test
+    public void getAll_CachedAndLoaded()
+    {
+        LocalAccount first = create( 987L, "first.account@turnonline.biz", "Fr5t6Gh2" );
+        LocalAccount second = create( 988L, "second.account@turnonline.biz", "Sc9d4Kl1" );
+        cache.invalidateAll();
+        // only the first one cached, the second one to be loaded
+        lap.get( first.getId() );
+
+        Map<Long, LocalAccount> all = lap.getAll( Arrays.asList( second.getId(), 999L, first.getId() ) );
+
+        assertWithMessage( "LocalAccounts by ID" )
+                .that( all.keySet() )
+                .containsExactly( second.getId(), first.getId() )
+                .inOrder();
+
+        assertWithMessage( "Loaded LocalAccount email" )
+                .that( all.get( second.getId() ).getEmail() )
+                .isEqualTo( "second.account@turnonline.biz" );
+    }
+
+    @Test
+    public void getAllByEmail_LookupAndBackFill()
+    {
+        create( 989L, "looked.up@turnonline.biz", "Lu4r6Hj1" );
+        create( 990L, "no.lookup@turnonline.biz", "Nl8p2Mn5" );
+
+        // account created before the email lookup has been introduced
+        ofy().delete().key( Key.create( AccountEmailLookup.class, "no.lookup@turnonline.biz" ) ).now();
+        cache.invalidateAll();
+
+        Map<String, LocalAccount> all = lap.getAllByEmail( Arrays.asList( "no.lookup@turnonline.biz",
+                "unknown@turnonline.biz",
+                "Looked.Up@turnonline.biz",
+                "looked.up@turnonline.biz" ) );
+
+        assertWithMessage( "LocalAccounts by email" )
+                .that( all.keySet() )
+                .containsExactly( "no.lookup@turnonline.biz", "Looked.Up@turnonline.biz", "looked.up@turnonline.biz" )
+                .inOrder();
+
+        assertWithMessage( "LocalAccount ID by mixed case email" )
+                .that( all.get( "Looked.Up@turnonline.biz" ).getId() )
+                .isEqualTo( 989L );
+
+        assertWithMessage( "Back-filled email lookup" )
+                .that( ofy().load().key( Key.create( AccountEmailLookup.class, "no.lookup@turnonline.biz" ) ).now() )
+                .isNotNull();
+    }
+
+    @Test
+    public void initGetAsync_Created()
+    {
+        new MockUp<LocalAccount>()
+        {
+            @Mock
+            public Account getAccount( @Nonnull RestFacade facade )
+            {
+                return new Account()
+                        .setId( 991L )
+                        .setEmail( "async.account@turnonline.biz" )
+                        .setIdentityId( "As7n9Kc3" );
+            }
+        };
+
+        CompletableFuture<LocalAccount> future = lap.initGetAsync( new LocalAccountProvider.Builder()
+                .email( "async.account@turnonline.biz" )
+                .identityId( "As7n9Kc3" ) );
+
+        assertWithMessage( "LocalAccount ID" )
+                .that( future.join().getId() )
+                .isEqualTo( 991L );
+
+        // once cached, completed right away
+        future = lap.initGetAsync( new LocalAccountProvider.Builder()
+                .accountId( 991L )
+                .email( "async.account@turnonline.biz" )
+                .identityId( "As7n9Kc3" ) );
+
+        assertWithMessage( "Cached LocalAccount future done" )
+                .that( future.isDone() )
+                .isTrue();
+    }
+
+    @Test
+    public void initGetAsync_NotFound()
+    {
+        new MockUp<LocalAccount>()
+        {
+            @Mock
+            public Account getAccount( @Nonnull RestFacade facade )
+            {
+                throw new NotFoundException( "Account not found" );
+            }
+        };
+
+        CompletableFuture<LocalAccount> future = lap.initGetAsync( new LocalAccountProvider.Builder()
+                .email( "missing.account@turnonline.biz" )
+                .identityId( "Ms3n8Gh4" ) );
+
+        try
+        {
+            future.join();
+            fail( "CompletionException expected" );
+        }
+        catch ( CompletionException e )
+        {
+            assertWithMessage( "Cause" )
+                    .that( e.getCause() )
+                    .isInstanceOf( NotFoundException.class );
+        }
+    }
+
+    @Test
+    public void getAsync_ByIdAndEmail()
+    {
+        LocalAccount created = create( 992L, "async.get@turnonline.biz", "Ag5t2Lp9" );
+        cache.invalidateAll();
+
+        assertWithMessage( "LocalAccount by ID" )
+                .that( lap.getAsync( created.getId() ).join().getEmail() )
+                .isEqualTo( "async.get@turnonline.biz" );
+
+        cache.invalidateAll();
+
+        assertWithMessage( "LocalAccount by email" )
+                .that( lap.getAsync( "Async.Get@turnonline.biz" ).join().getId() )
+                .isEqualTo( 992L );
+    }
+
+    @Test
+    public void getAsync_NotFound()
+    {
+        assertWithMessage( "LocalAccount by ID" )
+                .that( lap.getAsync( 993L ).join() )
+                .isNull();
+
+        assertWithMessage( "LocalAccount by email" )
+                .that( lap.getAsync( "unknown.async@turnonline.biz" ).join() )
+                .isNull();
+    }
+
+    @Test
+    public void getForUpdate_NotShared()
+    {
+        LocalAccount cached = create( 994L, "for.update@turnonline.biz", "Fu6p3Dr8" );
+        assertWithMessage( "Cached LocalAccount" )
+                .that( lap.get( 994L ) )
+                .isSameAs( cached );
+
+        LocalAccount forUpdate = lap.getForUpdate( 994L );
+
+        assertWithMessage( "LocalAccount for update" )
+                .that( forUpdate )
+                .isNotSameAs( cached );
+
+        assertWithMessage( "LocalAccount retrieved after for update" )
+                .that( lap.get( 994L ) )
+                .isNotSameAs( forUpdate );
+
+        assertWithMessage( "LocalAccounts for update" )
+                .that( lap.getAllForUpdate( Arrays.asList( 995L, 994L ) ).keySet() )
+                .containsExactly( 994L );
+    }
+
+    private LocalAccount create( long accountId, String email, String identityId )
+    {
+        new MockUp<LocalAccount>()
+        {
+            @Mock
+            public Account getAccount( @Nonnull RestFacade facade )
+            {
+                return new Account()
+                        .setId( accountId )
+                        .setEmail( email )
+                        .setIdentityId( identityId );
+            }
+        };
+
+        return lap.initGet( new LocalAccountProvider.Builder()
+                .email( email )
+                .identityId( identityId ) );
+    }
 }
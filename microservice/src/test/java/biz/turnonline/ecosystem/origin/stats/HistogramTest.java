@@ -0,0 +1,58 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link Histogram} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class HistogramTest
+{
+    @Test
+    public void empty()
+    {
+        Histogram histogram = new Histogram();
+
+        assertThat( histogram.count() ).isEqualTo( 0L );
+        assertThat( histogram.percentile( 0.99 ) ).isEqualTo( 0L );
+    }
+
+    @Test
+    public void percentile_BucketUpperBound()
+    {
+        Histogram histogram = new Histogram();
+        for ( int index = 0; index < 90; index++ )
+        {
+            histogram.record( 7 );
+        }
+        for ( int index = 0; index < 10; index++ )
+        {
+            histogram.record( 1500 );
+        }
+
+        assertThat( histogram.count() ).isEqualTo( 100L );
+        assertThat( histogram.percentile( 0.5 ) ).isEqualTo( 10L );
+        assertThat( histogram.percentile( 0.9 ) ).isEqualTo( 10L );
+        // capped by the maximum recorded value
+        assertThat( histogram.percentile( 0.99 ) ).isEqualTo( 1500L );
+    }
+
+    @Test
+    public void snapshot()
+    {
+        Histogram histogram = new Histogram();
+        histogram.record( -5 );
+        histogram.record( 10 );
+
+        Map<String, Object> snapshot = histogram.snapshot();
+
+        assertThat( snapshot.get( "count" ) ).isEqualTo( 2L );
+        assertThat( snapshot.get( "avg" ) ).isEqualTo( 5L );
+        assertThat( snapshot.get( "max" ) ).isEqualTo( 10L );
+    }
+}
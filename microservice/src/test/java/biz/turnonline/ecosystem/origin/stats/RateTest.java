@@ -0,0 +1,38 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import org.testng.annotations.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link Rate} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class RateTest
+{
+    @Test
+    public void perSecond_LastMinuteOnly()
+    {
+        Rate rate = new Rate();
+        for ( int index = 0; index < 120; index++ )
+        {
+            rate.mark( 1000 + index / 2 );
+        }
+
+        assertThat( rate.perSecond( 1059 ) ).isWithin( 0.001 ).of( 2.0 );
+        assertThat( rate.perSecond( 1089 ) ).isWithin( 0.001 ).of( 1.0 );
+        assertThat( rate.perSecond( 1200 ) ).isWithin( 0.001 ).of( 0.0 );
+    }
+
+    @Test
+    public void mark_NegativeTime()
+    {
+        Rate rate = new Rate();
+        rate.mark( -61 );
+        rate.mark( -1 );
+        rate.mark( 0 );
+
+        assertThat( rate.perSecond( 0 ) ).isWithin( 0.001 ).of( 2.0 / 60 );
+    }
+}
@@ -0,0 +1,106 @@
+package biz.turnonline.ecosystem.origin.stats;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.testng.annotations.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * {@link StatsServlet} unit testing.
+ *
+ * @author <a href="mailto:medvegy@turnonline.biz">Aurel Medvegy</a>
+ */
+public class StatsServletTest
+{
+    @Mocked
+    private HttpServletRequest request;
+
+    @Mocked
+    private HttpServletResponse response;
+
+    @Test
+    public void doGet_AllSections() throws Exception
+    {
+        Map<String, Object> stats = doGet( null );
+
+        assertThat( stats.keySet() ).containsExactly( "cache", "failing", "queue" ).inOrder();
+        assertThat( stats.get( "cache" ) ).isEqualTo( ImmutableMap.of( "hits", 10 ) );
+        // failed report does not break the others
+        assertThat( ( String ) stats.get( "failing" ) ).contains( "Not available" );
+    }
+
+    @Test
+    public void doGet_SingleSection() throws Exception
+    {
+        Map<String, Object> stats = doGet( "queue" );
+
+        assertThat( stats ).containsExactly( "queue", ImmutableMap.of( "depth", 3 ) );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Map<String, Object> doGet( String section ) throws Exception
+    {
+        StringWriter writer = new StringWriter();
+
+        new Expectations()
+        {
+            {
+                request.getParameter( "section" );
+                result = section;
+
+                response.getWriter();
+                result = new PrintWriter( writer );
+            }
+        };
+
+        StatsServlet tested = new StatsServlet( ImmutableSet.of(
+                reporter( "queue", ImmutableMap.<String, Object>of( "depth", 3 ) ),
+                reporter( "cache", ImmutableMap.<String, Object>of( "hits", 10 ) ),
+                new StatsReporter()
+                {
+                    @Override
+                    public String name()
+                    {
+                        return "failing";
+                    }
+
+                    @Override
+                    public Map<String, Object> report()
+                    {
+                        throw new IllegalStateException( "Not available" );
+                    }
+                } ) );
+
+        tested.doGet( request, response );
+
+        return new ObjectMapper().readValue( writer.toString(), Map.class );
+    }
+
+    private static StatsReporter reporter( String name, Map<String, Object> report )
+    {
+        return new StatsReporter()
+        {
+            @Override
+            public String name()
+            {
+                return name;
+            }
+
+            @Override
+            public Map<String, Object> report()
+            {
+                return report;
+            }
+        };
+    }
+}